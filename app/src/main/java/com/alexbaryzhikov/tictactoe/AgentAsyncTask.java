@@ -3,20 +3,20 @@ package com.alexbaryzhikov.tictactoe;
 import android.os.AsyncTask;
 import android.util.Log;
 
-import com.alexbaryzhikov.tictactoe.agents.Agent;
+import com.alexbaryzhikov.tictactoe.session.GameSession;
 
 public class AgentAsyncTask extends AsyncTask<Void, Void, Integer> {
 
   private static final String TAG = "AgentAsyncTask";
-  private Agent agent;
+  private GameSession session;
 
-  AgentAsyncTask(Agent agent) {
-    this.agent = agent;
+  AgentAsyncTask(GameSession session) {
+    this.session = session;
   }
 
   @Override
   protected Integer doInBackground(Void... voids) {
-    return agent.getAction();
+    return session.getAgentAction();
   }
 
   @Override
@@ -0,0 +1,28 @@
+package com.alexbaryzhikov.tictactoe;
+
+import com.alexbaryzhikov.tictactoe.mcts.SearchMonitor;
+
+/**
+ * Connects a search of the agent to its agent task: cancelling the task aborts the search,
+ * and search progress goes to the progress bar
+ */
+public class AgentSearchMonitor implements SearchMonitor {
+
+  private final AgentAsyncTask task;
+
+  AgentSearchMonitor(AgentAsyncTask task) {
+    this.task = task;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return task.isCancelled();
+  }
+
+  @Override
+  public void onProgressUpdate(int progress) {
+    if (!task.isCancelled()) {
+      GameController.onProgressUpdate(progress);
+    }
+  }
+}
@@ -4,9 +4,12 @@ import android.content.Context;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.alexbaryzhikov.tictactoe.agents.Agent;
 import com.alexbaryzhikov.tictactoe.agents.MctsPAgent;
-import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.MctsP;
+import com.alexbaryzhikov.tictactoe.mcts.SearchLimits;
+import com.alexbaryzhikov.tictactoe.mcts.TensorFlowEvaluator;
+import com.alexbaryzhikov.tictactoe.session.GameSession;
 
 import java.lang.ref.WeakReference;
 
@@ -14,7 +17,8 @@ public class GameController {
 
   private static final String TAG = "GameController";
   private static WeakReference<GameView> view;
-  private static Agent agent;
+  private static GameSession session;
+  private static MctsP mcts;
   private static AgentAsyncTask agentAsyncTask;
   private static String difficulty = "hard";
 
@@ -22,6 +26,13 @@ public class GameController {
     return agentAsyncTask;
   }
 
+  /**
+   * Return state of the current game, null if no game was started
+   */
+  public static State getState() {
+    return session == null ? null : session.getState();
+  }
+
   public static void registerView(GameView view) {
     GameController.view = new WeakReference<>(view);
   }
@@ -40,17 +51,19 @@ public class GameController {
     }
     Log.d(TAG, "Starting a new game");
     // Create agent
-    if (agent == null) {
-      agent = new MctsPAgent(view.get().getAssets());
+    if (session == null) {
+      mcts = new MctsP(TensorFlowEvaluator.create(view.get().getAssets()));
+      session = new GameSession(new MctsPAgent(mcts));
     }
     // Cancel current agent task if any
     if (agentAsyncTask != null) {
       agentAsyncTask.cancel(false);
       endAgentTask();
     }
-    Game.restart();
+    mcts.cancelPondering();  // the next search waits for the background thread
+    session.restart();
     view.get().onGameStateUpdated();
-    if (Game.state.getPlayer() == -1) {
+    if (session.getState().getPlayer() == -1) {
       runAgentTask();
     }
   }
@@ -80,16 +93,17 @@ public class GameController {
    * Process player click
    */
   public static void onPlayerClick(int position) {
-    if (Game.state.isFinished()) {  // game is over
+    State state = session.getState();
+    if (state.isFinished()) {  // game is over
       Toast.makeText((Context) view.get(), R.string.start_game, Toast.LENGTH_SHORT).show();
-    } else if (Game.state.getPlayer() == 1) {  // player's turn
-      if (Game.isValidAction(position)) {
+    } else if (state.getPlayer() == 1) {  // player's turn
+      if (session.isValidAction(position)) {
         Log.d(TAG, "Player move: " + position);
         // Make a move
-        Game.state = Game.state.getNextState(position);
+        session.makeMove(position);
         view.get().onGameStateUpdated();
-        if (Game.state.isFinished()) {
-          int winner = Game.state.getValue() == -1 ? 1 : 0;
+        if (session.getState().isFinished()) {
+          int winner = session.getState().getValue() == -1 ? 1 : 0;
           displayWinner(winner);
         } else {
           runAgentTask();
@@ -107,14 +121,16 @@ public class GameController {
    */
   public static void onAgentClick(int position) {
     endAgentTask();
-    if (Game.isValidAction(position)) {
+    if (session.isValidAction(position)) {
       Log.d(TAG, "Agent move: " + position);
       // Make a move
-      Game.state = Game.state.getNextState(position);
+      session.makeMove(position);
       view.get().onGameStateUpdated();
-      if (Game.state.isFinished()) {
-        int winner = Game.state.getValue() == -1 ? -1 : 0;
+      if (session.getState().isFinished()) {
+        int winner = session.getState().getValue() == -1 ? -1 : 0;
         displayWinner(winner);
+      } else {
+        mcts.ponder(session.getState());  // think on the player's turn
       }
     } else {
       Log.e(TAG, "Invalid agent move: " + position);
@@ -158,7 +174,9 @@ public class GameController {
    */
   private static void runAgentTask() {
     view.get().showProgressBar(true);
-    agentAsyncTask = new AgentAsyncTask(agent);
+    mcts.setLimits(SearchLimits.ofSimulations(getSimulations()));
+    agentAsyncTask = new AgentAsyncTask(session);
+    mcts.setMonitor(new AgentSearchMonitor(agentAsyncTask));
     agentAsyncTask.execute();
   }
 
@@ -14,6 +14,7 @@ import android.widget.RelativeLayout;
 import android.widget.Toast;
 
 import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -78,10 +79,11 @@ public class MainActivity extends AppCompatActivity implements GameView {
     // Insert Board view into root layout
     rootLayout.addView(boardGrid);
 
-    if (Game.state == null) {
+    State state = GameController.getState();
+    if (state == null) {
       GameController.startNewGame();
     } else {
-      if (!Game.state.isFinished() && Game.state.getPlayer() == -1) {
+      if (!state.isFinished() && state.getPlayer() == -1) {
         // Agent is thinking -- show progress bar
         progressBar.setVisibility(View.VISIBLE);
       }
@@ -127,7 +129,7 @@ public class MainActivity extends AppCompatActivity implements GameView {
 
   @Override
   public void onGameStateUpdated() {
-    adapter.setBoard(Game.state.getBoard());
+    adapter.setBoard(GameController.getState().getBoard());
     adapter.notifyDataSetChanged();
   }
 
@@ -1,5 +0,0 @@
-package com.alexbaryzhikov.tictactoe.agents;
-
-public interface Agent {
-  int getAction();
-}
@@ -0,0 +1,68 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import android.content.res.AssetManager;
+import android.support.annotation.NonNull;
+
+import org.tensorflow.contrib.android.TensorFlowInferenceInterface;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Evaluator running the frozen TensorFlow model from the app assets
+ */
+public class TensorFlowEvaluator implements Evaluator {
+
+  private static final String MODEL_FILE = "opt_model.pb";
+  private static final int INPUT_DIM = 7;
+  private static final int BOARD_SIZE = INPUT_DIM * INPUT_DIM;
+  private static final String INPUT_NAME = "input_1";
+  private static final String[] OUTPUT_NAMES = {"pi/Softmax", "v/Tanh"};
+
+  private TensorFlowInferenceInterface inferenceInterface;
+
+  private TensorFlowEvaluator() {  // prevents instantiation
+  }
+
+  public static TensorFlowEvaluator create(@NonNull AssetManager assetManager) {
+    TensorFlowEvaluator evaluator = new TensorFlowEvaluator();
+    evaluator.inferenceInterface =
+        new TensorFlowInferenceInterface(assetManager, MODEL_FILE);
+    return evaluator;
+  }
+
+  @Override
+  public float predict(float[] pi, float[] canonicalBoard) {
+    if (pi == null || pi.length != BOARD_SIZE) {
+      throw new IllegalArgumentException("Invalid argument 'pi'");
+    }
+
+    float[] value = {0.0f};
+
+    // Predict
+    inferenceInterface.feed(INPUT_NAME, canonicalBoard, 1, INPUT_DIM, INPUT_DIM);
+    inferenceInterface.run(OUTPUT_NAMES);
+    inferenceInterface.fetch(OUTPUT_NAMES[0], pi);
+    inferenceInterface.fetch(OUTPUT_NAMES[1], value);
+    return value[0];
+  }
+
+  /**
+   * Predict a batch of boards in one inference call
+   */
+  @Override
+  public void predict(float[] pi, float[] value, float[] boards, int batch) {
+    if (pi == null || pi.length < batch * BOARD_SIZE) {
+      throw new IllegalArgumentException("Invalid argument 'pi'");
+    }
+    if (value == null || value.length < batch) {
+      throw new IllegalArgumentException("Invalid argument 'value'");
+    }
+
+    // Predict
+    inferenceInterface.feed(INPUT_NAME, FloatBuffer.wrap(boards, 0, batch * BOARD_SIZE),
+        batch, INPUT_DIM, INPUT_DIM);
+    inferenceInterface.run(OUTPUT_NAMES);
+    inferenceInterface.fetch(OUTPUT_NAMES[0], FloatBuffer.wrap(pi, 0, batch * BOARD_SIZE));
+    inferenceInterface.fetch(OUTPUT_NAMES[1], FloatBuffer.wrap(value, 0, batch));
+  }
+}
@@ -0,0 +1,107 @@
+package com.alexbaryzhikov.tictactoe.benchmark;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.Position;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game rules on a sample of mid-game positions. Each call takes the next position of the sample,
+ * so that branches don't settle on a single board.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class GameBenchmark {
+
+  private static final int POSITIONS = 1024;
+  private static final int MAX_MOVES = 24;
+
+  private State[] states;
+  private int[] actions;
+  private Position[] positions;
+  private Position[] trackedPositions;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    states = Positions.getRandomStates(POSITIONS, MAX_MOVES, random);
+    actions = new int[POSITIONS];
+    for (int i = 0; i < POSITIONS; i++) {
+      actions[i] = Positions.getRandomAction(states[i], random);
+    }
+    positions = new Position[POSITIONS];
+    trackedPositions = new Position[POSITIONS];
+    for (int i = 0; i < POSITIONS; i++) {
+      positions[i] = new Position(states[i]);
+      trackedPositions[i] = new Position(states[i], true);
+    }
+  }
+
+  @Benchmark
+  public State getNextState() {
+    int i = nextPosition();
+    return states[i].getNextState(actions[i]);
+  }
+
+  @Benchmark
+  public long makeUnmakeMove() {
+    int i = nextPosition();
+    Position position = positions[i];
+    position.makeMove(actions[i]);
+    long key = position.getKey();
+    position.unmakeMove();
+    return key;
+  }
+
+  @Benchmark
+  public long makeUnmakeMoveWithThreats() {
+    int i = nextPosition();
+    Position position = trackedPositions[i];
+    position.makeMove(actions[i]);
+    long threats = position.getThreats(position.getPlayer());
+    position.unmakeMove();
+    return threats;
+  }
+
+  @Benchmark
+  public long updateValidActions() {
+    int i = nextPosition();
+    State state = states[i];
+    long occupied = state.getPieces(1) | state.getPieces(-1) | Game.squareMask(actions[i]);
+    return Game.updateValidActions(state.getValidActions(), occupied, actions[i]);
+  }
+
+  @Benchmark
+  public boolean isPlayerWon() {
+    int i = nextPosition();
+    State state = states[i];
+    long pieces = state.getPieces(state.getPlayer()) | Game.squareMask(actions[i]);
+    return Game.isPlayerWon(pieces, actions[i]);
+  }
+
+  /**
+   * Position key update, the replacement of string ids built by {@code Game.makeId}
+   */
+  @Benchmark
+  public long updateKey() {
+    int i = nextPosition();
+    State state = states[i];
+    return Game.updateKey(state.getKey(), state.getPlayer(), actions[i]);
+  }
+
+  private int nextPosition() {
+    next = (next + 1) & (POSITIONS - 1);
+    return next;
+  }
+}
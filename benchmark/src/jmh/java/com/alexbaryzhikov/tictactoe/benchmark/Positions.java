@@ -0,0 +1,48 @@
+package com.alexbaryzhikov.tictactoe.benchmark;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import java.util.Random;
+
+/**
+ * Sample positions for benchmarks
+ */
+final class Positions {
+
+  private Positions() {  // prevents instantiation
+  }
+
+  /**
+   * Return initial state where the first player moves
+   */
+  static State getInitialState() {
+    return Game.getInitialState(1);
+  }
+
+  /**
+   * Return unfinished positions reached by random play from the initial state
+   *
+   * @param maxMoves Maximum number of moves played in a position
+   */
+  static State[] getRandomStates(int count, int maxMoves, Random random) {
+    State[] states = new State[count];
+    for (int i = 0; i < count; i++) {
+      State state;
+      do {
+        state = getInitialState();
+        int moves = random.nextInt(maxMoves + 1);
+        for (int move = 0; move < moves && !state.isFinished(); move++) {
+          state = state.getNextState(getRandomAction(state, random));
+        }
+      } while (state.isFinished());
+      states[i] = state;
+    }
+    return states;
+  }
+
+  static int getRandomAction(State state, Random random) {
+    long validActions = state.getValidActions();
+    return Game.nthAction(validActions, random.nextInt(Long.bitCount(validActions)));
+  }
+}
@@ -0,0 +1,58 @@
+package com.alexbaryzhikov.tictactoe.benchmark;
+
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.RolloutEngine;
+import com.alexbaryzhikov.tictactoe.mcts.TacticalPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random rollout from the initial position to the end of the game: through immutable states,
+ * and with the rollout engine used by Mcts on every simulation
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class RolloutBenchmark {
+
+  private State initialState;
+  private Random random;
+  private RolloutEngine rolloutEngine;
+  private RolloutEngine tacticalRolloutEngine;
+
+  @Setup
+  public void setUp() {
+    initialState = Positions.getInitialState();
+    random = new Random(1);
+    rolloutEngine = new RolloutEngine(1);
+    tacticalRolloutEngine = new RolloutEngine(1, new TacticalPolicy());
+  }
+
+  @Benchmark
+  public int rolloutEngine() {
+    return rolloutEngine.rollout(initialState);
+  }
+
+  @Benchmark
+  public int tacticalRollout() {
+    return tacticalRolloutEngine.rollout(initialState);
+  }
+
+  @Benchmark
+  public int rollout() {
+    State state = initialState;
+    int player = state.getPlayer();
+    while (!state.isFinished()) {
+      state = state.getNextState(Positions.getRandomAction(state, random));
+    }
+    return state.getPlayer() == player ? state.getValue() : -state.getValue();
+  }
+}
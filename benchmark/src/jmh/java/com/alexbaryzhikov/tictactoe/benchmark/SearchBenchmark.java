@@ -0,0 +1,70 @@
+package com.alexbaryzhikov.tictactoe.benchmark;
+
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.Mcts;
+import com.alexbaryzhikov.tictactoe.mcts.MctsP;
+import com.alexbaryzhikov.tictactoe.mcts.SearchLimits;
+import com.alexbaryzhikov.tictactoe.mcts.UniformEvaluator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole searches with a fixed number of simulations. Searches alternate between two unrelated
+ * positions, so that every search builds a new tree instead of reusing the previous one. MctsP
+ * runs without evaluation cache, which would otherwise carry results across searches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class SearchBenchmark {
+
+  @Param({"1000", "10000"})
+  public int simulations;
+
+  private State[] states;
+  private int next;
+  private Mcts mcts;
+  private MctsP mctsP;
+
+  @Setup
+  public void setUp() {
+    State state = Positions.getInitialState();
+    states = new State[]{state.getNextState(0), state.getNextState(3)};
+    SearchLimits limits = SearchLimits.ofSimulations(simulations);
+    mcts = new Mcts(1, 1);
+    mcts.setLimits(limits);
+    mctsP = new MctsP(new UniformEvaluator());
+    mctsP.setLimits(limits);
+    mctsP.setEvaluationCache(null);  // a warm cache would skip every evaluation after the first
+  }
+
+  @TearDown
+  public void tearDown() {
+    mcts.shutdown();
+    mctsP.shutdown();
+  }
+
+  @Benchmark
+  public int[] mcts() {
+    return mcts.getDistribution(nextState());
+  }
+
+  @Benchmark
+  public int[] mctsP() {
+    return mctsP.getDistribution(nextState());
+  }
+
+  private State nextState() {
+    next ^= 1;
+    return states[next];
+  }
+}
@@ -0,0 +1,11 @@
+package com.alexbaryzhikov.tictactoe.agents;
+
+import com.alexbaryzhikov.tictactoe.game.State;
+
+public interface Agent {
+
+  /**
+   * Return action to play in the state, or -1 if the choice was cancelled
+   */
+  int getAction(State state);
+}
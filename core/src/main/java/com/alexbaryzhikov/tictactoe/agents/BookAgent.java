@@ -0,0 +1,28 @@
+package com.alexbaryzhikov.tictactoe.agents;
+
+import com.alexbaryzhikov.tictactoe.data.OpeningBook;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+/**
+ * Agent plays moves of the opening book, and asks another agent in positions off the book
+ */
+public class BookAgent implements Agent {
+
+  private final OpeningBook book;
+  private final Agent agent;
+
+  /**
+   * @param book  Opening book
+   * @param agent Agent choosing moves off the book, e.g. a {@link MctsAgent}
+   */
+  public BookAgent(OpeningBook book, Agent agent) {
+    this.book = book;
+    this.agent = agent;
+  }
+
+  @Override
+  public int getAction(State state) {
+    int action = book.getAction(state);
+    return action >= 0 ? action : agent.getAction(state);
+  }
+}
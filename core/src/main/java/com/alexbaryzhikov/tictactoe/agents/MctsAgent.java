@@ -0,0 +1,41 @@
+package com.alexbaryzhikov.tictactoe.agents;
+
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.Mcts;
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
+
+/**
+ * Agent uses Monte-Carlo Tree Search to choose next move
+ */
+public class MctsAgent implements Agent {
+
+  private SearchEngine mcts;
+
+  public MctsAgent() {
+    this(new Mcts());
+  }
+
+  /**
+   * @param mcts Search engine, e.g. a parallel {@link Mcts} or an ensemble
+   */
+  public MctsAgent(SearchEngine mcts) {
+    this.mcts = mcts;
+  }
+
+  @Override
+  public int getAction(State state) {
+    int[] distribution = mcts.getDistribution(state);
+    if (distribution == null) {  // search was cancelled
+      return -1;
+    }
+    int max = Integer.MIN_VALUE;
+    int action = -1;
+    for (int i = 0; i < distribution.length; i++) {
+      if (distribution[i] > max) {
+        max = distribution[i];
+        action = i;
+      }
+    }
+    return action;
+  }
+}
@@ -1,9 +1,8 @@
 package com.alexbaryzhikov.tictactoe.agents;
 
-import android.content.res.AssetManager;
-
-import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
 import com.alexbaryzhikov.tictactoe.mcts.MctsP;
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -14,17 +13,20 @@ import java.util.Random;
  */
 public class MctsPAgent implements Agent {
 
-  private MctsP mcts;
+  private SearchEngine mcts;
   private Random random = new Random();
 
-  public MctsPAgent(AssetManager assetManager) {
-    mcts = new MctsP(assetManager);
+  /**
+   * @param mcts Search engine, e.g. a parallel {@link MctsP} or an ensemble
+   */
+  public MctsPAgent(SearchEngine mcts) {
+    this.mcts = mcts;
   }
 
   @Override
-  public int getAction() {
-    int[] visits = mcts.getDistribution(Game.state);
-    if (visits == null) {
+  public int getAction(State state) {
+    int[] visits = mcts.getDistribution(state);
+    if (visits == null || visits.length == 0) {
       return -1;
     }
     int max = Integer.MIN_VALUE;
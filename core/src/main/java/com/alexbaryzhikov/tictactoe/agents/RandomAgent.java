@@ -1,9 +1,8 @@
 package com.alexbaryzhikov.tictactoe.agents;
 
 import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 /**
@@ -14,8 +13,8 @@ public class RandomAgent implements Agent {
   private Random random = new Random();
 
   @Override
-  public int getAction() {
-    List<Integer> validActions = new ArrayList<>(Game.state.getValidActions());
-    return validActions.get(random.nextInt(validActions.size()));
+  public int getAction(State state) {
+    long validActions = state.getValidActions();
+    return Game.nthAction(validActions, random.nextInt(Long.bitCount(validActions)));
   }
 }
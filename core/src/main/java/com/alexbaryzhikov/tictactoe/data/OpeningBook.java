@@ -0,0 +1,140 @@
+package com.alexbaryzhikov.tictactoe.data;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Opening book: moves for early positions, found offline by deep searches.
+ * <p>
+ * A book file starts with a header, followed by fixed width entries sorted by key. All values are
+ * big-endian.
+ * <pre>
+ * header: magic int, version int, entry size int, reserved int
+ * entry:  key long, action byte
+ * </pre>
+ * Key is {@link State#getSymmetricCanonicalKey} of the position, so one entry serves the
+ * position with either player to move and all its symmetric images. Action is the move on the
+ * canonical representative, see {@link State#toCanonicalAction}.
+ * <p>
+ * The book is memory-mapped at construction, and a lookup is a binary search in place. It is
+ * thread-safe.
+ */
+public final class OpeningBook {
+
+  public static final int MAGIC = 0x54544231;  // "TTB1"
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = 16;
+  public static final int ENTRY_BYTES = 8 + 1;
+
+  private final MappedByteBuffer entries;
+  private final int count;
+
+  /**
+   * Map the book file and check its header
+   *
+   * @throws IOException if the file is not a book of a supported version
+   */
+  public OpeningBook(File file) throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      FileChannel channel = in.getChannel();
+      long size = channel.size();
+      if (size < HEADER_BYTES) {
+        throw new IOException("Not an opening book: " + file);
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not an opening book: " + file);
+      }
+      int version = header.getInt();
+      int entryBytes = header.getInt();
+      if (version != VERSION || entryBytes != ENTRY_BYTES) {
+        throw new IOException("Unsupported opening book version " + version + ": " + file);
+      }
+      if ((size - HEADER_BYTES) % ENTRY_BYTES != 0
+          || (size - HEADER_BYTES) / ENTRY_BYTES > Integer.MAX_VALUE / ENTRY_BYTES) {
+        throw new IOException("Corrupted opening book: " + file);
+      }
+      count = (int) ((size - HEADER_BYTES) / ENTRY_BYTES);
+      entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size - HEADER_BYTES);
+    }  // mapping stays valid after the channel is closed
+  }
+
+  /**
+   * Write a book file, replacing an existing one
+   *
+   * @param keys    Symmetric canonical keys of the positions, distinct
+   * @param actions Canonical actions of the positions
+   */
+  public static void write(File file, long[] keys, int[] actions) throws IOException {
+    if (keys.length != actions.length) {
+      throw new IllegalArgumentException("Keys and actions differ in length");
+    }
+    long[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + keys.length * ENTRY_BYTES);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(ENTRY_BYTES).putInt(0);
+    for (int i = 0; i < sorted.length; i++) {
+      if (i > 0 && sorted[i] == sorted[i - 1]) {
+        throw new IllegalArgumentException("Duplicate key: " + sorted[i]);
+      }
+      buffer.putLong(sorted[i]);
+      buffer.put((byte) 0);  // filled below
+    }
+    for (int i = 0; i < keys.length; i++) {
+      if (actions[i] < 0 || actions[i] >= Game.board_size) {
+        throw new IllegalArgumentException("Invalid action: " + actions[i]);
+      }
+      int entry = Arrays.binarySearch(sorted, keys[i]);
+      buffer.put(HEADER_BYTES + entry * ENTRY_BYTES + 8, (byte) actions[i]);
+    }
+    buffer.flip();
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      out.setLength(0);
+      FileChannel channel = out.getChannel();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * Return number of positions in the book
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Return book move in the state, or -1 if the position is not in the book
+   */
+  public int getAction(State state) {
+    if (count == 0 || state.isFinished()) {
+      return -1;
+    }
+    long key = state.getSymmetricCanonicalKey();
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midKey = entries.getLong(mid * ENTRY_BYTES);
+      if (midKey < key) {
+        low = mid + 1;
+      } else if (midKey > key) {
+        high = mid - 1;
+      } else {
+        int action = state.fromCanonicalAction(entries.get(mid * ENTRY_BYTES + 8));
+        // A key collision with a position off the book would give an arbitrary square
+        return Game.isValidAction(state, action) ? action : -1;
+      }
+    }
+    return -1;
+  }
+}
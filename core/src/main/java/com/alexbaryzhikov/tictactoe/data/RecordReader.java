@@ -0,0 +1,231 @@
+package com.alexbaryzhikov.tictactoe.data;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only view of a file in the {@link Records} format, memory-mapped at construction.
+ * <p>
+ * Records are read in place by index, nothing is allocated per record. A mapping is limited to
+ * 2 GB, so larger files are mapped in regions holding a whole number of records each. Incomplete
+ * record at the end of the file, e.g. left by an interrupted writer, is ignored.
+ * <p>
+ * Accessors by index are thread-safe. Sequential scans can use a {@link Cursor}, which is owned by
+ * one thread.
+ */
+public final class RecordReader {
+
+  private static final int REGION_RECORDS = Integer.MAX_VALUE / Records.RECORD_BYTES;
+
+  private final MappedByteBuffer[] regions;
+  private final long count;
+
+  /**
+   * Map the file and check its header
+   *
+   * @throws IOException if the file is not a record file of a supported version
+   */
+  public RecordReader(File file) throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      FileChannel channel = in.getChannel();
+      long size = channel.size();
+      if (size < Records.HEADER_BYTES) {
+        throw new IOException("Not a record file: " + file);
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Records.HEADER_BYTES);
+      if (header.getInt() != Records.MAGIC) {
+        throw new IOException("Not a record file: " + file);
+      }
+      int version = header.getInt();
+      int recordBytes = header.getInt();
+      if (version != Records.VERSION || recordBytes != Records.RECORD_BYTES) {
+        throw new IOException("Unsupported record file version " + version + ": " + file);
+      }
+      count = (size - Records.HEADER_BYTES) / Records.RECORD_BYTES;
+      regions = new MappedByteBuffer[(int) ((count + REGION_RECORDS - 1) / REGION_RECORDS)];
+      for (int i = 0; i < regions.length; i++) {
+        long first = (long) i * REGION_RECORDS;
+        long records = Math.min(REGION_RECORDS, count - first);
+        regions[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+            Records.HEADER_BYTES + first * Records.RECORD_BYTES,
+            records * Records.RECORD_BYTES);
+      }
+    }  // mappings stay valid after the channel is closed
+  }
+
+  /**
+   * Return number of records in the file
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Return pieces of the player to move
+   */
+  public long getOwn(long index) {
+    return region(index).getLong(offset(index) + Records.OWN);
+  }
+
+  /**
+   * Return pieces of the opponent
+   */
+  public long getOpponent(long index) {
+    return region(index).getLong(offset(index) + Records.OPPONENT);
+  }
+
+  /**
+   * Return quantized share of the visits of the action, in [0, 255]
+   */
+  public int getPolicy(long index, int action) {
+    return region(index).get(offset(index) + Records.POLICY + action) & 0xFF;
+  }
+
+  /**
+   * Fill the array with the visit distribution of the record, normalized to sum 1
+   */
+  public void getPolicy(long index, float[] policy) {
+    readPolicy(region(index), offset(index), policy);
+  }
+
+  /**
+   * Return game result for the player to move: 1 win, -1 loss, 0 draw
+   */
+  public int getOutcome(long index) {
+    return region(index).get(offset(index) + Records.OUTCOME);
+  }
+
+  /**
+   * Fill the array with the board of the record as seen by the player to move, in the layout of
+   * {@link com.alexbaryzhikov.tictactoe.game.State#getCanonicalBoard}
+   */
+  public void getCanonicalBoard(long index, float[] board) {
+    fillBoard(getOwn(index), getOpponent(index), board);
+  }
+
+  /**
+   * Return a cursor positioned before the first record
+   */
+  public Cursor newCursor() {
+    return new Cursor();
+  }
+
+  private MappedByteBuffer region(long index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("Record " + index + " of " + count);
+    }
+    return regions[(int) (index / REGION_RECORDS)];
+  }
+
+  private static int offset(long index) {
+    return (int) (index % REGION_RECORDS) * Records.RECORD_BYTES;
+  }
+
+  private static void readPolicy(ByteBuffer region, int offset, float[] policy) {
+    int total = 0;
+    for (int i = 0; i < Game.board_size; i++) {
+      total += region.get(offset + Records.POLICY + i) & 0xFF;
+    }
+    float scale = total == 0 ? 0 : 1f / total;
+    for (int i = 0; i < Game.board_size; i++) {
+      policy[i] = (region.get(offset + Records.POLICY + i) & 0xFF) * scale;
+    }
+  }
+
+  private static void fillBoard(long own, long opponent, float[] board) {
+    for (int i = 0; i < Game.board_size; i++) {
+      long mask = Game.squareMask(i);
+      board[i] = (own & mask) != 0 ? 1 : (opponent & mask) != 0 ? -1 : 0;
+    }
+  }
+
+  /**
+   * Sequential reader of the records. Fields are read from the current record, set by
+   * {@link #next} or {@link #seek}. Reading fields without a current record, before the first
+   * {@link #next} or after the last, throws {@link IllegalStateException}.
+   */
+  public final class Cursor {
+
+    private long index = -1;
+    private ByteBuffer region;
+    private int offset;
+
+    private Cursor() {
+    }
+
+    /**
+     * Move to the next record, return false if there are no more records
+     */
+    public boolean next() {
+      if (index + 1 >= count) {
+        index = count;
+        return false;
+      }
+      index++;
+      if (region == null || offset + Records.RECORD_BYTES >= region.limit()) {
+        region = region(index);
+        offset = RecordReader.offset(index);
+      } else {
+        offset += Records.RECORD_BYTES;
+      }
+      return true;
+    }
+
+    /**
+     * Move to the record, the following {@link #next} continues after it
+     */
+    public void seek(long index) {
+      region = region(index);
+      offset = RecordReader.offset(index);
+      this.index = index;
+    }
+
+    /**
+     * Return index of the current record
+     */
+    public long getIndex() {
+      return index;
+    }
+
+    public long getOwn() {
+      checkRecord();
+      return region.getLong(offset + Records.OWN);
+    }
+
+    public long getOpponent() {
+      checkRecord();
+      return region.getLong(offset + Records.OPPONENT);
+    }
+
+    public int getPolicy(int action) {
+      checkRecord();
+      return region.get(offset + Records.POLICY + action) & 0xFF;
+    }
+
+    public void getPolicy(float[] policy) {
+      checkRecord();
+      readPolicy(region, offset, policy);
+    }
+
+    public int getOutcome() {
+      checkRecord();
+      return region.get(offset + Records.OUTCOME);
+    }
+
+    public void getCanonicalBoard(float[] board) {
+      fillBoard(getOwn(), getOpponent(), board);
+    }
+
+    private void checkRecord() {
+      if (index < 0 || index >= count) {
+        throw new IllegalStateException("No current record, call next() or seek() first");
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.alexbaryzhikov.tictactoe.data;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends position records to a file in the {@link Records} format. Records are collected in a
+ * fixed size buffer and written out when it fills up, so memory use doesn't depend on the number
+ * of records.
+ * <p>
+ * Writes are synchronized, so the writer can be shared by threads. A thread that writes several
+ * records in a row, e.g. all positions of a game, can hold the writer lock to keep them together.
+ */
+public final class RecordWriter implements Closeable {
+
+  private static final int BUFFER_RECORDS = 1024;
+  private static final byte[] PADDING = new byte[Records.RECORD_BYTES - Records.PADDING];
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private long count;
+
+  /**
+   * Create the file, replacing an existing one, and write the header
+   */
+  public RecordWriter(File file) throws IOException {
+    RandomAccessFile out = new RandomAccessFile(file, "rw");
+    try {
+      out.setLength(0);
+      channel = out.getChannel();
+      buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * Records.RECORD_BYTES);
+      buffer.putInt(Records.MAGIC)
+          .putInt(Records.VERSION)
+          .putInt(Records.RECORD_BYTES)
+          .putInt(0);
+    } catch (IOException | RuntimeException | Error e) {
+      out.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Write the position of the state with its search result
+   *
+   * @param visits  Visit counts over all actions
+   * @param outcome Game result for the player to move: 1 win, -1 loss, 0 draw
+   */
+  public synchronized void write(State state, int[] visits, int outcome) throws IOException {
+    int player = state.getPlayer();
+    write(state.getPieces(player), state.getPieces(-player), visits, outcome);
+  }
+
+  /**
+   * Write a record
+   *
+   * @param own      Pieces of the player to move
+   * @param opponent Pieces of the opponent
+   * @param visits   Visit counts over all actions
+   * @param outcome  Game result for the player to move: 1 win, -1 loss, 0 draw
+   */
+  public synchronized void write(long own, long opponent, int[] visits, int outcome)
+      throws IOException {
+    if (visits.length != Game.board_size) {
+      throw new IllegalArgumentException("Invalid number of actions: " + visits.length);
+    }
+    if (outcome < -1 || outcome > 1) {
+      throw new IllegalArgumentException("Invalid outcome: " + outcome);
+    }
+    if (buffer.remaining() < Records.RECORD_BYTES) {
+      flush();
+    }
+    buffer.putLong(own).putLong(opponent);
+    long total = 0;
+    for (int v : visits) {
+      total += v;
+    }
+    for (int v : visits) {
+      buffer.put((byte) (total == 0 ? 0 : (255L * v + total / 2) / total));
+    }
+    buffer.put((byte) outcome);
+    buffer.put(PADDING);
+    count++;
+  }
+
+  /**
+   * Return number of records written
+   */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * Write buffered records to the file
+   */
+  public synchronized void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel.isOpen()) {
+      flush();
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.alexbaryzhikov.tictactoe.data;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+
+/**
+ * Binary format of position records, written by self-play for training. Files are written by
+ * {@link RecordWriter} and read in place by {@link RecordReader}.
+ * <p>
+ * A file starts with a header, followed by fixed width records. All values are big-endian.
+ * <pre>
+ * header: magic int, version int, record size int, reserved int
+ * record: own pieces long, opponent pieces long, policy byte[49], outcome byte, zero byte[6]
+ * </pre>
+ * Pieces are 49-bit masks of the player to move and of the opponent. Records are padded to a
+ * multiple of 8 bytes, so the piece longs of every record are aligned to their size. Policy is
+ * the visit distribution of the search, each action quantized to an unsigned byte of its share
+ * of the visits: {@code round(255 * visits / total)}. Outcome is the game result for the player
+ * to move: 1 win, -1 loss, 0 draw.
+ */
+public final class Records {
+
+  public static final int MAGIC = 0x54545231;  // "TTR1"
+  public static final int VERSION = 2;
+  public static final int HEADER_BYTES = 16;
+  public static final int RECORD_BYTES = 72;
+
+  // Record field offsets
+  public static final int OWN = 0;
+  public static final int OPPONENT = 8;
+  public static final int POLICY = 16;
+  public static final int OUTCOME = POLICY + Game.board_size;
+  public static final int PADDING = OUTCOME + 1;
+
+  private Records() {  // prevents instantiation
+  }
+}
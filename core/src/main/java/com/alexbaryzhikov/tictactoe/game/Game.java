@@ -0,0 +1,324 @@
+package com.alexbaryzhikov.tictactoe.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 'Four' game. The first player to have 4 pieces in a straight line wins.
+ * A player can't place a piece on a square surrounded by empty squares.
+ * <p>
+ * Board is represented by bitboards: bit {@code i} of a {@code long} mask stands for square
+ * {@code i}, which fits the 49 squares of the 7x7 board.
+ * <p>
+ * The class holds no game in progress, only lookup tables built once and read-only afterwards, so
+ * it can be shared by any number of concurrent games. A game is a chain of immutable
+ * {@link State}s, see {@code GameSession}.
+ */
+public final class Game {
+
+  public static final int N = 7;
+
+  public static final int board_size = N * N;
+
+  private static int[] index_board;
+  private static long borders;
+  private static long[] neighbors;
+  private static long[][] win_segments;
+  private static long[] win_lines;
+  private static int[][] square_lines;
+  private static long[][] zobrist_pieces;
+  private static long zobrist_player;
+
+  static {
+    init();
+  }
+
+  private Game() {  // prevents instantiation
+  }
+
+  /**
+   * Initialize game
+   */
+  private static void init() {
+    index_board = new int[board_size];
+    for (int i = 0; i < board_size; i++) {
+      index_board[i] = i;
+    }
+    borders = findBorders();
+    neighbors = findNeighbors();
+    win_segments = findWinSegments();
+    findWinLines();
+    initZobrist();
+  }
+
+  /**
+   * Return state of the empty board
+   *
+   * @param player Player to move first, 1 or -1
+   */
+  public static State getInitialState(int player) {
+    if (player != 1 && player != -1) {
+      throw new IllegalArgumentException("Invalid player: " + player);
+    }
+    return new State(player);
+  }
+
+  /**
+   * Return bitboard mask of a single square
+   */
+  public static long squareMask(int square) {
+    return 1L << square;
+  }
+
+
+  /* ZOBRIST HASHING -------------------------------------------------------------------------- */
+
+  /**
+   * Return key of the empty board with the player to move
+   */
+  public static long getInitialKey(int player) {
+    return player == 1 ? 0 : zobrist_player;
+  }
+
+  /**
+   * Update key after the player made the action. Keys are updated incrementally: the piece key
+   * is toggled in and the player to move is switched.
+   * <p>
+   * Key of a position with player 1 to move doesn't include the player key, so it is also the key
+   * of the canonical board (own pieces hashed as player 1 pieces).
+   */
+  public static long updateKey(long key, int player, int action) {
+    return key ^ zobrist_pieces[player == 1 ? 0 : 1][action] ^ zobrist_player;
+  }
+
+  /**
+   * Throw if two states with equal keys are different positions, even up to a board symmetry
+   */
+  public static void verifyKey(State expected, State actual) {
+    if (!expected.isSymmetricTo(actual)) {
+      throw new IllegalStateException("Key collision: " + Long.toHexString(actual.getKey()));
+    }
+  }
+
+  /**
+   * Fill Zobrist tables with pseudo random keys. Seed is fixed, so keys are stable between runs.
+   */
+  private static void initZobrist() {
+    long seed = 0x5DEECE66DL;
+    zobrist_pieces = new long[2][board_size];
+    for (int i = 0; i < board_size; i++) {
+      zobrist_pieces[0][i] = splitMix64(seed += 0x9E3779B97F4A7C15L);
+      zobrist_pieces[1][i] = splitMix64(seed += 0x9E3779B97F4A7C15L);
+    }
+    zobrist_player = splitMix64(seed + 0x9E3779B97F4A7C15L);
+  }
+
+  /**
+   * SplitMix64 output function
+   */
+  private static long splitMix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+
+  /* VALID ACTIONS ------------------------------------------------------------------------------ */
+
+  /**
+   * Test action validity in the game state
+   */
+  public static boolean isValidAction(State state, int action) {
+    return action >= 0 && action < board_size
+        && (state.getValidActions() & squareMask(action)) != 0;
+  }
+
+  /**
+   * Return initial mask of valid actions
+   */
+  public static long getInitialValidActions() {
+    return borders;
+  }
+
+  /**
+   * Update valid actions mask after the action was played.
+   * Valid actions never include occupied squares, so the played square drops out along with
+   * the occupied neighbors.
+   */
+  public static long updateValidActions(long validActions, long occupied, int action) {
+    return (validActions | neighbors[action]) & ~occupied;
+  }
+
+  /**
+   * Return n-th (zero-based, in ascending order) action of the actions mask
+   */
+  public static int nthAction(long actions, int n) {
+    for (int i = 0; i < n; i++) {
+      actions &= actions - 1;  // drop the lowest action
+    }
+    return Long.numberOfTrailingZeros(actions);
+  }
+
+  /**
+   * Return a mask of border positions
+   */
+  private static long findBorders() {
+    long borders = 0;
+    for (int i : index_board) {
+      if (isBorder(i)) {
+        borders |= squareMask(i);
+      }
+    }
+    return borders;
+  }
+
+  /**
+   * Return true if square is on the border of the board
+   */
+  private static boolean isBorder(int square) {
+    int rem = square % N;
+    return square < N || square >= board_size - N || rem == 0 || rem == N - 1;
+  }
+
+  /**
+   * Return neighbors mask for each square
+   */
+  private static long[] findNeighbors() {
+    long[] neighbors = new long[board_size];
+    for (int i : index_board) {
+      int row = i / N;
+      int col = i % N;
+      for (int dr = -1; dr <= 1; dr++) {
+        for (int dc = -1; dc <= 1; dc++) {
+          int r = row + dr;
+          int c = col + dc;
+          if ((dr != 0 || dc != 0) && r >= 0 && r < N && c >= 0 && c < N) {
+            neighbors[i] |= squareMask(r * N + c);
+          }
+        }
+      }
+    }
+    return neighbors;
+  }
+
+  /* WIN CONDITIONS ----------------------------------------------------------------------------- */
+
+  /**
+   * Return true if player made a winning move
+   *
+   * @param pieces Bitboard of the player pieces, including the action
+   * @param action The last move of the player
+   */
+  public static boolean isPlayerWon(long pieces, int action) {
+    for (long segment : win_segments[action]) {
+      if ((pieces & segment) == segment) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return number of win lines, the distinct win segments of the board
+   */
+  public static int getWinLineCount() {
+    return win_lines.length;
+  }
+
+  /**
+   * Return mask of the win line
+   */
+  public static long getWinLine(int line) {
+    return win_lines[line];
+  }
+
+  /**
+   * Return ids of the win lines passing through the square. The array is shared and must not
+   * be modified.
+   */
+  public static int[] getSquareLines(int square) {
+    return square_lines[square];
+  }
+
+  /**
+   * Number win segments: collect distinct segments and lines of each square
+   */
+  private static void findWinLines() {
+    List<Long> lines = new ArrayList<>();
+    square_lines = new int[board_size][];
+    for (int square : index_board) {
+      square_lines[square] = new int[win_segments[square].length];
+      for (int i = 0; i < win_segments[square].length; i++) {
+        int line = lines.indexOf(win_segments[square][i]);
+        if (line < 0) {
+          line = lines.size();
+          lines.add(win_segments[square][i]);
+        }
+        square_lines[square][i] = line;
+      }
+    }
+    win_lines = new long[lines.size()];
+    for (int i = 0; i < win_lines.length; i++) {
+      win_lines[i] = lines.get(i);
+    }
+  }
+
+  /**
+   * Return masks of all possible win segments of each square
+   */
+  private static long[][] findWinSegments() {
+    long[][] winSegments = new long[board_size][];
+    for (int square : index_board) {
+      List<Long> validSegments = new ArrayList<>();
+      for (int[] segment : getSegments(square)) {
+        if (isValidSegment(segment)) {
+          long mask = 0;
+          for (int i : segment) {
+            mask |= squareMask(i);
+          }
+          validSegments.add(mask);
+        }
+      }
+      winSegments[square] = new long[validSegments.size()];
+      for (int i = 0; i < winSegments[square].length; i++) {
+        winSegments[square][i] = validSegments.get(i);
+      }
+    }
+    return winSegments;
+  }
+
+  /**
+   * Get all segments of length 4 that include the square
+   */
+  private static int[][] getSegments(int square) {
+    int[][] segments = new int[16][4];
+    for (int j = 0, l = -3; l < 1; j++, l++) {
+      for (int k = 0; k < 4; k++) {
+        segments[j][k] = square + k + l;  // row
+        segments[j + 4][k] = square + N * (k + l);  // column
+        segments[j + 8][k] = square + (N + 1) * (k + l);  // diagonal \
+        segments[j + 12][k] = square + (N - 1) * (k + l);  // diagonal /
+      }
+    }
+    return segments;
+  }
+
+  /**
+   * Test if segment is a valid continuous board segment
+   */
+  private static boolean isValidSegment(int[] segment) {
+    // Out of bounds
+    for (int i : segment) {
+      if (i < 0 || i >= board_size) {
+        return false;
+      }
+    }
+    // Tearing
+    for (int i = 0; i < 3; i++) {
+      if (Math.abs(segment[i] % N - segment[i + 1] % N) > 1) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
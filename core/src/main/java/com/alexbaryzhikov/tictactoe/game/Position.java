@@ -0,0 +1,208 @@
+package com.alexbaryzhikov.tictactoe.game;
+
+/**
+ * Mutable game position for search.
+ * <p>
+ * Moves are made and unmade in place: pieces, valid actions, key and win status are updated
+ * in O(1) per move, and the previous valid actions are kept on an undo stack.
+ * <p>
+ * Optionally the position keeps a {@link ThreatTracker} to report threats. Tracking costs more
+ * per move than the bitboard win check, so it is off unless asked for. Immutable
+ * {@link State} snapshots are made with {@link #toState} only where they are stored.
+ * <p>
+ * Position is not thread-safe.
+ */
+public final class Position {
+
+  private long piecesA;  // pieces of player 1
+  private long piecesB;  // pieces of player -1
+  private int player;
+  private long key;
+  private long swappedKey;
+  private long validActions;
+  private boolean finished;
+  private int value;
+  private final ThreatTracker threats;
+
+  // Undo stack
+  private final int[] moves = new int[Game.board_size];
+  private final long[] previousValidActions = new long[Game.board_size];
+  private int depth;
+
+  /**
+   * Create initial position, the first player to move
+   */
+  public Position() {
+    this(false);
+  }
+
+  /**
+   * Create initial position, the first player to move
+   *
+   * @param trackThreats Keep track of threats of the players
+   */
+  public Position(boolean trackThreats) {
+    this(new State(1), trackThreats);
+  }
+
+  public Position(State state) {
+    this(state, false);
+  }
+
+  /**
+   * @param trackThreats Keep track of threats of the players
+   */
+  public Position(State state, boolean trackThreats) {
+    threats = trackThreats ? new ThreatTracker() : null;
+    set(state);
+  }
+
+  /**
+   * Set the position to the state and clear the undo stack
+   */
+  public void set(State state) {
+    piecesA = state.getPieces(1);
+    piecesB = state.getPieces(-1);
+    player = state.getPlayer();
+    key = state.getKey();
+    swappedKey = state.getSwappedKey();
+    validActions = state.getValidActions();
+    finished = state.isFinished();
+    value = state.getValue();
+    depth = 0;
+    if (threats != null) {
+      threats.set(piecesA, piecesB);
+    }
+  }
+
+  /**
+   * Play the action of the player to move
+   */
+  public void makeMove(int action) {
+    long mask = Game.squareMask(action);
+    if (finished || (validActions & mask) == 0) {
+      throw new IllegalArgumentException("Invalid action: " + action);
+    }
+    moves[depth] = action;
+    previousValidActions[depth] = validActions;
+    depth++;
+    long pieces;
+    if (player == 1) {
+      pieces = piecesA |= mask;
+    } else {
+      pieces = piecesB |= mask;
+    }
+    key = Game.updateKey(key, player, action);
+    swappedKey = Game.updateKey(swappedKey, -player, action);
+    validActions = Game.updateValidActions(validActions, piecesA | piecesB, action);
+    boolean won = threats != null
+        ? threats.makeMove(player, action)
+        : Game.isPlayerWon(pieces, action);
+    if (won) {
+      finished = true;
+      value = -1;  // from the point of view of the next player
+    } else {
+      finished = validActions == 0;
+    }
+    player = -player;
+  }
+
+  /**
+   * Take back the last move
+   */
+  public void unmakeMove() {
+    if (depth == 0) {
+      throw new IllegalStateException("No moves to take back");
+    }
+    depth--;
+    int action = moves[depth];
+    player = -player;
+    long mask = Game.squareMask(action);
+    if (player == 1) {
+      piecesA &= ~mask;
+    } else {
+      piecesB &= ~mask;
+    }
+    key = Game.updateKey(key, player, action);
+    swappedKey = Game.updateKey(swappedKey, -player, action);
+    validActions = previousValidActions[depth];
+    if (threats != null) {
+      threats.unmakeMove(player, action);
+    }
+    finished = false;  // moves are never made in a finished position
+    value = 0;
+  }
+
+  /**
+   * Return immutable snapshot of the position
+   */
+  public State toState() {
+    return new State(piecesA, piecesB, player, key, swappedKey, validActions, finished, value);
+  }
+
+  /**
+   * Return bitboard of the player pieces
+   */
+  public long getPieces(int player) {
+    return player == 1 ? piecesA : piecesB;
+  }
+
+  public int getPlayer() {
+    return player;
+  }
+
+  public long getKey() {
+    return key;
+  }
+
+  public long getValidActions() {
+    return validActions;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * Return value of the finished game from the point of view of the player to move
+   */
+  public int getValue() {
+    return value;
+  }
+
+  /**
+   * Return mask of the empty squares where the player wins immediately
+   */
+  public long getThreats(int player) {
+    checkThreatTracking();
+    return threats.getThreats(player);
+  }
+
+  /**
+   * Return number of open threes of the player
+   */
+  public int getThreatLineCount(int player) {
+    checkThreatTracking();
+    return threats.getThreatLineCount(player);
+  }
+
+  /**
+   * Return number of moves that can be taken back
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Return action of the last move
+   */
+  public int getLastMove() {
+    return moves[depth - 1];
+  }
+
+  private void checkThreatTracking() {
+    if (threats == null) {
+      throw new IllegalStateException("Threats are not tracked");
+    }
+  }
+}
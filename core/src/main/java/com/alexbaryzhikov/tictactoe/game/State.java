@@ -0,0 +1,226 @@
+package com.alexbaryzhikov.tictactoe.game;
+
+public final class State {
+
+  private final long piecesA;  // pieces of player 1
+  private final long piecesB;  // pieces of player -1
+  private final int player;
+  private final long key;
+  private final long swappedKey;  // key of the position with colors and player to move swapped
+  private final long validActions;
+  private final boolean finished;
+  private final int value;
+
+  private int[] board;
+  private float[] canonicalBoard;
+  private long symmetricCanonicalKey;
+  private volatile int symmetry = -1;  // written last, so the key above is visible once set
+
+  State(int player) {
+    this.piecesA = 0;
+    this.piecesB = 0;
+    this.player = player;
+    this.key = Game.getInitialKey(player);
+    this.swappedKey = Game.getInitialKey(-player);
+    this.validActions = Game.getInitialValidActions();
+    this.finished = false;
+    this.value = 0;
+  }
+
+  /**
+   * Snapshot of a mutable position
+   */
+  State(long piecesA, long piecesB, int player, long key, long swappedKey, long validActions,
+        boolean finished, int value) {
+    this.piecesA = piecesA;
+    this.piecesB = piecesB;
+    this.player = player;
+    this.key = key;
+    this.swappedKey = swappedKey;
+    this.validActions = validActions;
+    this.finished = finished;
+    this.value = value;
+  }
+
+  private State(long piecesA, long piecesB, int player, long key, long swappedKey,
+                long validActions, int action) {
+    this.piecesA = piecesA;
+    this.piecesB = piecesB;
+    this.player = player;
+    this.key = key;
+    this.swappedKey = swappedKey;
+    this.validActions = Game.updateValidActions(validActions, piecesA | piecesB, action);
+    boolean opponentWon = Game.isPlayerWon(getPieces(-player), action);
+    this.finished = this.validActions == 0 || opponentWon;
+    this.value = opponentWon ? -1 : 0;
+  }
+
+  public int[] getBoard() {
+    if (board == null) {
+      board = new int[Game.board_size];
+      for (int i = 0; i < board.length; i++) {
+        long mask = Game.squareMask(i);
+        if ((piecesA & mask) != 0) {
+          board[i] = 1;
+        } else if ((piecesB & mask) != 0) {
+          board[i] = -1;
+        }
+      }
+    }
+    return board;
+  }
+
+  public float[] getCanonicalBoard() {
+    if (canonicalBoard == null) {
+      canonicalBoard = new float[Game.board_size];
+      long own = getPieces(player);
+      long opponent = getPieces(-player);
+      for (int i = 0; i < canonicalBoard.length; i++) {
+        long mask = Game.squareMask(i);
+        if ((own & mask) != 0) {
+          canonicalBoard[i] = 1;
+        } else if ((opponent & mask) != 0) {
+          canonicalBoard[i] = -1;
+        }
+      }
+    }
+    return canonicalBoard;
+  }
+
+  /**
+   * Return bitboard of the player pieces
+   */
+  public long getPieces(int player) {
+    return player == 1 ? piecesA : piecesB;
+  }
+
+  /**
+   * Return number of moves played so far
+   */
+  public int getMoveCount() {
+    return Long.bitCount(piecesA | piecesB);
+  }
+
+  public int getPlayer() {
+    return player;
+  }
+
+  /**
+   * Return 64-bit Zobrist key of the position and the player to move
+   */
+  public long getKey() {
+    return key;
+  }
+
+  /**
+   * Return key of the position with colors and player to move swapped
+   */
+  long getSwappedKey() {
+    return swappedKey;
+  }
+
+  /**
+   * Return key of the canonical board, equal for positions that differ only in colors
+   */
+  public long getCanonicalKey() {
+    return player == 1 ? key : swappedKey;
+  }
+
+  /**
+   * Return key of the position that is equal for positions symmetric to each other.
+   * Keys of this kind are not Zobrist keys and must not be mixed with {@link #getKey}.
+   */
+  public long getSymmetricKey() {
+    return getSymmetricCanonicalKey() ^ Game.getInitialKey(player);
+  }
+
+  /**
+   * Return key of the canonical board that is equal for boards symmetric to each other
+   */
+  public long getSymmetricCanonicalKey() {
+    if (symmetry < 0) {
+      findSymmetry();
+    }
+    return symmetricCanonicalKey;
+  }
+
+  /**
+   * Return symmetry mapping this position to its canonical representative
+   */
+  public int getSymmetry() {
+    if (symmetry < 0) {
+      findSymmetry();
+    }
+    return symmetry;
+  }
+
+  /**
+   * Map action of this position to the action of the canonical representative
+   */
+  public int toCanonicalAction(int action) {
+    return Symmetry.transformAction(getSymmetry(), action);
+  }
+
+  /**
+   * Map action of the canonical representative to the action of this position
+   */
+  public int fromCanonicalAction(int action) {
+    return Symmetry.inverseAction(getSymmetry(), action);
+  }
+
+  /**
+   * Return valid actions mask, bit {@code i} is set if square {@code i} is a valid action
+   */
+  public long getValidActions() {
+    return validActions;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public int getValue() {
+    return value;
+  }
+
+  /**
+   * Return true if both states have the same pieces and the same player to move
+   */
+  public boolean isSamePosition(State other) {
+    return piecesA == other.piecesA && piecesB == other.piecesB && player == other.player;
+  }
+
+  /**
+   * Return true if the states are the same position up to a board symmetry
+   */
+  public boolean isSymmetricTo(State other) {
+    int t = getSymmetry();
+    int otherT = other.getSymmetry();
+    return player == other.player
+        && Symmetry.transform(getPieces(player), t)
+        == Symmetry.transform(other.getPieces(player), otherT)
+        && Symmetry.transform(getPieces(-player), t)
+        == Symmetry.transform(other.getPieces(-player), otherT);
+  }
+
+  public State getNextState(int action) {
+    long mask = Game.squareMask(action);
+    long nextKey = Game.updateKey(key, player, action);
+    long nextSwappedKey = Game.updateKey(swappedKey, -player, action);
+    if (player == 1) {
+      return new State(piecesA | mask, piecesB, -player, nextKey, nextSwappedKey, validActions,
+          action);
+    }
+    return new State(piecesA, piecesB | mask, -player, nextKey, nextSwappedKey, validActions,
+        action);
+  }
+
+  private void findSymmetry() {
+    long own = getPieces(player);
+    long opponent = getPieces(-player);
+    int t = Symmetry.findCanonical(own, opponent);
+    symmetricCanonicalKey =
+        Symmetry.hash(Symmetry.transform(own, t), Symmetry.transform(opponent, t));
+    symmetry = t;
+  }
+}
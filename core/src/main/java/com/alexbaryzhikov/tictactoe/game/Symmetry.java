@@ -0,0 +1,149 @@
+package com.alexbaryzhikov.tictactoe.game;
+
+/**
+ * Symmetries of the board: 4 rotations and 4 reflections (the dihedral group of the square).
+ * Game rules don't change under them, so symmetric positions have the same value and their
+ * actions correspond one to one.
+ * <p>
+ * Canonical representative of a position is its image under the symmetry that gives the
+ * smallest pair of (own pieces, opponent pieces) bitboards.
+ */
+public final class Symmetry {
+
+  public static final int COUNT = 8;
+
+  private static final int N = Game.N;
+  private static final int ROW_MASK = (1 << N) - 1;
+
+  private static int[][] squares;
+  private static int[][] inverse;
+  private static long[][][] rows;
+
+  static {
+    init();
+  }
+
+  private Symmetry() {  // prevents instantiation
+  }
+
+  private static void init() {
+    squares = new int[COUNT][Game.board_size];
+    inverse = new int[COUNT][Game.board_size];
+    for (int t = 0; t < COUNT; t++) {
+      for (int i = 0; i < Game.board_size; i++) {
+        int image = transformSquare(t, i / N, i % N);
+        squares[t][i] = image;
+        inverse[t][image] = i;
+      }
+    }
+    // Images of every bit pattern of every row, so that a bitboard maps with N lookups
+    rows = new long[COUNT][N][1 << N];
+    for (int t = 0; t < COUNT; t++) {
+      for (int row = 0; row < N; row++) {
+        for (int bits = 1; bits <= ROW_MASK; bits++) {
+          long mask = 0;
+          for (int col = 0; col < N; col++) {
+            if ((bits & 1 << col) != 0) {
+              mask |= Game.squareMask(squares[t][row * N + col]);
+            }
+          }
+          rows[t][row][bits] = mask;
+        }
+      }
+    }
+  }
+
+  /**
+   * Return image of the square under the symmetry
+   */
+  private static int transformSquare(int t, int r, int c) {
+    int m = N - 1;
+    switch (t) {
+      case 0:  // identity
+        return r * N + c;
+      case 1:  // rotation by 90
+        return c * N + m - r;
+      case 2:  // rotation by 180
+        return (m - r) * N + m - c;
+      case 3:  // rotation by 270
+        return (m - c) * N + r;
+      case 4:  // horizontal reflection
+        return r * N + m - c;
+      case 5:  // main diagonal reflection
+        return c * N + r;
+      case 6:  // vertical reflection
+        return (m - r) * N + c;
+      default:  // anti-diagonal reflection
+        return (m - c) * N + m - r;
+    }
+  }
+
+  /**
+   * Return image of the bitboard under the symmetry
+   */
+  public static long transform(long mask, int t) {
+    long[][] images = rows[t];
+    long image = 0;
+    for (int row = 0; row < N; row++) {
+      image |= images[row][(int) (mask >>> row * N) & ROW_MASK];
+    }
+    return image;
+  }
+
+  /**
+   * Return image of the action under the symmetry
+   */
+  public static int transformAction(int t, int action) {
+    return squares[t][action];
+  }
+
+  /**
+   * Return action whose image under the symmetry is the given action
+   */
+  public static int inverseAction(int t, int action) {
+    return inverse[t][action];
+  }
+
+  /**
+   * Return symmetry that maps the position to its canonical representative
+   */
+  static int findCanonical(long own, long opponent) {
+    int best = 0;
+    long bestOwn = own;
+    long bestOpponent = opponent;
+    for (int t = 1; t < COUNT; t++) {
+      long imageOwn = transform(own, t);
+      int cmp = compareUnsigned(imageOwn, bestOwn);
+      if (cmp > 0) {
+        continue;
+      }
+      long imageOpponent = transform(opponent, t);
+      if (cmp < 0 || compareUnsigned(imageOpponent, bestOpponent) < 0) {
+        best = t;
+        bestOwn = imageOwn;
+        bestOpponent = imageOpponent;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Hash canonical bitboards into a 64-bit key
+   */
+  static long hash(long own, long opponent) {
+    return mix(own ^ mix(opponent + 0x9E3779B97F4A7C15L));
+  }
+
+  /**
+   * SplitMix64 output function, a bijection
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  private static int compareUnsigned(long a, long b) {
+    return Long.compare(a + Long.MIN_VALUE, b + Long.MIN_VALUE);
+  }
+}
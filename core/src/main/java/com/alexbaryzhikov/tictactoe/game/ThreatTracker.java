@@ -0,0 +1,131 @@
+package com.alexbaryzhikov.tictactoe.game;
+
+import java.util.Arrays;
+
+/**
+ * Incremental tracker of wins and threats.
+ * <p>
+ * Keeps the number of pieces of each player in every win line. A move updates only the lines
+ * through its square. A line with 3 pieces of a player and none of the opponent is a threat:
+ * the player wins by playing its empty square. Threat squares of each player are kept as a
+ * mask, with the number of threat lines through each square.
+ * <p>
+ * ThreatTracker is not thread-safe.
+ */
+public final class ThreatTracker {
+
+  private static final int LINE_LENGTH = 4;
+
+  private final byte[][] counts = new byte[2][Game.getWinLineCount()];
+  private final byte[][] squareThreats = new byte[2][Game.board_size];
+  private final long[] threats = new long[2];
+  private final int[] threatLines = new int[2];
+  private final long[] pieces = new long[2];
+
+  /**
+   * Set tracker to the position
+   *
+   * @param piecesA Bitboard of player 1 pieces
+   * @param piecesB Bitboard of player -1 pieces
+   */
+  public void set(long piecesA, long piecesB) {
+    for (int p = 0; p < 2; p++) {
+      Arrays.fill(counts[p], (byte) 0);
+      Arrays.fill(squareThreats[p], (byte) 0);
+      threats[p] = 0;
+      threatLines[p] = 0;
+      pieces[p] = 0;
+    }
+    // Replay the pieces, transitions of the counters don't depend on the order of moves
+    for (long a = piecesA; a != 0; a &= a - 1) {
+      makeMove(1, Long.numberOfTrailingZeros(a));
+    }
+    for (long b = piecesB; b != 0; b &= b - 1) {
+      makeMove(-1, Long.numberOfTrailingZeros(b));
+    }
+  }
+
+  /**
+   * Place piece of the player on the empty square
+   *
+   * @return true if the player has won
+   */
+  public boolean makeMove(int player, int square) {
+    int p = index(player);
+    int o = 1 - p;
+    byte[] own = counts[p];
+    byte[] opponent = counts[o];
+    pieces[p] |= Game.squareMask(square);
+    boolean won = false;
+    for (int line : Game.getSquareLines(square)) {
+      int count = ++own[line];
+      if (opponent[line] == 0) {
+        if (count == LINE_LENGTH - 1) {  // new threat at the empty square of the line
+          addThreat(p, Long.numberOfTrailingZeros(Game.getWinLine(line) & ~pieces[p]));
+        } else if (count == LINE_LENGTH) {  // threat completed
+          removeThreat(p, square);
+          won = true;
+        }
+      } else if (count == 1 && opponent[line] == LINE_LENGTH - 1) {  // opponent threat blocked
+        removeThreat(o, square);
+      }
+    }
+    return won;
+  }
+
+  /**
+   * Take back the last move of the player
+   */
+  public void unmakeMove(int player, int square) {
+    int p = index(player);
+    int o = 1 - p;
+    byte[] own = counts[p];
+    byte[] opponent = counts[o];
+    for (int line : Game.getSquareLines(square)) {
+      int count = own[line]--;
+      if (opponent[line] == 0) {
+        if (count == LINE_LENGTH - 1) {
+          removeThreat(p, Long.numberOfTrailingZeros(Game.getWinLine(line) & ~pieces[p]));
+        } else if (count == LINE_LENGTH) {
+          addThreat(p, square);
+        }
+      } else if (count == 1 && opponent[line] == LINE_LENGTH - 1) {
+        addThreat(o, square);
+      }
+    }
+    pieces[p] &= ~Game.squareMask(square);
+  }
+
+  /**
+   * Return mask of the empty squares where the player wins immediately
+   */
+  public long getThreats(int player) {
+    return threats[index(player)];
+  }
+
+  /**
+   * Return number of open threes of the player: lines with 3 pieces of the player and none of
+   * the opponent
+   */
+  public int getThreatLineCount(int player) {
+    return threatLines[index(player)];
+  }
+
+  private void addThreat(int p, int square) {
+    threatLines[p]++;
+    if (squareThreats[p][square]++ == 0) {
+      threats[p] |= Game.squareMask(square);
+    }
+  }
+
+  private void removeThreat(int p, int square) {
+    threatLines[p]--;
+    if (--squareThreats[p][square] == 0) {
+      threats[p] &= ~Game.squareMask(square);
+    }
+  }
+
+  private static int index(int player) {
+    return (1 - player) >> 1;
+  }
+}
@@ -0,0 +1,136 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import java.util.Arrays;
+
+/**
+ * Cache of evaluator results (Pi and Value) keyed by canonical board keys. Symmetric boards
+ * share an entry.
+ * <p>
+ * Set-associative table sized from a memory budget. Each set holds a few entries and replaces
+ * them with the CLOCK policy: a hit marks the entry as referenced, and the clock hand of the
+ * set skips (and clears) referenced entries when picking a victim. Access is synchronized, so
+ * the cache can be shared by search threads and engines.
+ */
+public final class EvaluationCache {
+
+  private static final int BOARD_SIZE = 49;
+  private static final int WAYS = 4;
+  /** Key + Pi + Value + flags */
+  private static final int ENTRY_BYTES = 8 + 4 * BOARD_SIZE + 4 + 1;
+
+  private static final byte EMPTY = 0;
+  private static final byte USED = 1;
+  private static final byte REFERENCED = 2;
+
+  private final long[] keys;
+  private final float[] pis;
+  private final float[] values;
+  private final byte[] flags;
+  private final byte[] hands;
+  private final int setMask;
+
+  private long hits;
+  private long misses;
+
+  /**
+   * @param memoryBudget Cache size limit in bytes
+   */
+  public EvaluationCache(long memoryBudget) {
+    long sets = Math.max(memoryBudget / (ENTRY_BYTES * WAYS), 1);
+    int setCount = (int) Long.highestOneBit(Math.min(sets, 1 << 24));
+    int capacity = setCount * WAYS;
+    keys = new long[capacity];
+    pis = new float[capacity * BOARD_SIZE];
+    values = new float[capacity];
+    flags = new byte[capacity];
+    hands = new byte[setCount];
+    setMask = setCount - 1;
+  }
+
+  /**
+   * Look up cached result of the board
+   *
+   * @param pi       The array to which Pi will be copied
+   * @param piOffset Index in the array to copy Pi to
+   * @param value    The array to which Value will be copied
+   * @param index    Index in the array to copy Value to
+   * @return true if the board is cached
+   */
+  public synchronized boolean get(long key, float[] pi, int piOffset, float[] value, int index) {
+    int first = set(key) * WAYS;
+    for (int i = first; i < first + WAYS; i++) {
+      if (flags[i] != EMPTY && keys[i] == key) {
+        flags[i] = REFERENCED;
+        System.arraycopy(pis, i * BOARD_SIZE, pi, piOffset, BOARD_SIZE);
+        value[index] = values[i];
+        hits++;
+        return true;
+      }
+    }
+    misses++;
+    return false;
+  }
+
+  /**
+   * Store result of the board
+   *
+   * @param piOffset Index of the board Pi in the array
+   */
+  public synchronized void put(long key, float[] pi, int piOffset, float value) {
+    int set = set(key);
+    int first = set * WAYS;
+    int slot = -1;
+    for (int i = first; i < first + WAYS; i++) {
+      if (flags[i] == EMPTY || keys[i] == key) {
+        slot = i;
+        break;
+      }
+    }
+    if (slot < 0) {
+      slot = evict(set);
+    }
+    keys[slot] = key;
+    System.arraycopy(pi, piOffset, pis, slot * BOARD_SIZE, BOARD_SIZE);
+    values[slot] = value;
+    flags[slot] = USED;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Remove all entries and reset counters
+   */
+  public synchronized void clear() {
+    Arrays.fill(flags, EMPTY);
+    hits = 0;
+    misses = 0;
+  }
+
+  /**
+   * Advance clock hand of the full set to an unreferenced entry and return it
+   */
+  private int evict(int set) {
+    int first = set * WAYS;
+    int hand = hands[set];
+    while (flags[first + hand] == REFERENCED) {
+      flags[first + hand] = USED;
+      hand = (hand + 1) % WAYS;
+    }
+    hands[set] = (byte) ((hand + 1) % WAYS);
+    return first + hand;
+  }
+
+  /**
+   * Return set of the key, package-private for tests
+   */
+  int set(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32) & setMask;
+  }
+}
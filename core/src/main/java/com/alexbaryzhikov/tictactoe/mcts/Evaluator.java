@@ -0,0 +1,29 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+/**
+ * Neural network predicting move probabilities (Pi) and Value of a board.
+ * <p>
+ * Boards are in canonical form: 1 for pieces of the player to move, -1 for the opponent.
+ * Implementations don't have to be thread-safe, the search serializes calls.
+ */
+public interface Evaluator {
+
+  /**
+   * Predict Pi and Value of the canonicalBoard.
+   *
+   * @param pi             The array to which Pi will be written
+   * @param canonicalBoard board in canonical form (pow of player 1)
+   * @return Value
+   */
+  float predict(float[] pi, float[] canonicalBoard);
+
+  /**
+   * Predict Pi and Value of a batch of canonical boards.
+   *
+   * @param pi     The array to which Pi of each board will be written, one after another
+   * @param value  The array to which Value of each board will be written
+   * @param boards Boards in canonical form, one after another
+   * @param batch  Number of boards
+   */
+  void predict(float[] pi, float[] value, float[] boards, int batch);
+}
@@ -0,0 +1,444 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Evaluator running the network forward pass in plain Java, without native inference runtime.
+ * <p>
+ * The network is a trunk of layers followed by a policy head and a value head, all reading the
+ * trunk output. Tensors are flat float arrays in channels-first order, {@code [channel][row][col]}
+ * over the 7x7 board, and all buffers are allocated once at load time. An evaluator is not
+ * thread-safe, threads can run {@link #copy}s of it, which share the weights.
+ * <p>
+ * Weights file, big-endian:
+ * <pre>
+ * int magic 'BNN1'
+ * int layer count, layers  -- trunk
+ * int layer count, layers  -- policy head, ends with 49 outputs
+ * int layer count, layers  -- value head, ends with 1 output
+ *
+ * CONV:     int 1, int in, int out, int kernel, int activation,
+ *           float[out][in][kernel][kernel] weights, float[out] bias
+ * RESIDUAL: int 2, int channels, int kernel, two convolutions as above without the header,
+ *           y = relu(x + conv2(relu(conv1(x))))
+ * DENSE:    int 3, int in, int out, int activation, float[out][in] weights, float[out] bias
+ *
+ * activation: 0 none, 1 relu, 2 tanh, 3 softmax
+ * </pre>
+ * Convolutions use same padding. Batch normalization must be folded into the weights on export.
+ * Dimensions are at most 65536 and weight tensors at most 2^26 floats.
+ */
+public final class JavaEvaluator implements Evaluator {
+
+  private static final int MAGIC = 0x424E4E31;
+  private static final int N = 7;
+  private static final int BOARD_SIZE = N * N;
+  private static final int MAX_DIM = 1 << 16;
+  private static final int MAX_LAYERS = 1 << 10;
+  private static final int MAX_TENSOR = 1 << 26;  // floats, 256 MB
+
+  private static final int CONV = 1;
+  private static final int RESIDUAL = 2;
+  private static final int DENSE = 3;
+
+  private static final int NONE = 0;
+  private static final int RELU = 1;
+  private static final int TANH = 2;
+  private static final int SOFTMAX = 3;
+
+  private final Layer[] trunk;
+  private final Layer[] policyHead;
+  private final Layer[] valueHead;
+
+  // Buffers, each fits the largest tensor
+  private final float[] trunkA;
+  private final float[] trunkB;
+  private final float[] headA;
+  private final float[] headB;
+  private final float[] scratch;
+
+  private JavaEvaluator(Layer[] trunk, Layer[] policyHead, Layer[] valueHead) {
+    this.trunk = trunk;
+    this.policyHead = policyHead;
+    this.valueHead = valueHead;
+    checkShapes(trunk, BOARD_SIZE);
+    int trunkSize = trunk.length > 0 ? trunk[trunk.length - 1].outputSize : BOARD_SIZE;
+    if (checkShapes(policyHead, trunkSize) != BOARD_SIZE) {
+      throw new IllegalArgumentException("Policy head must have " + BOARD_SIZE + " outputs");
+    }
+    if (checkShapes(valueHead, trunkSize) != 1) {
+      throw new IllegalArgumentException("Value head must have 1 output");
+    }
+    int size = BOARD_SIZE;
+    for (Layer[] layers : new Layer[][]{trunk, policyHead, valueHead}) {
+      for (Layer layer : layers) {
+        size = Math.max(size, layer.outputSize);
+      }
+    }
+    trunkA = new float[size];
+    trunkB = new float[size];
+    headA = new float[size];
+    headB = new float[size];
+    scratch = new float[size];
+  }
+
+  /**
+   * Load network from the weights file
+   */
+  public static JavaEvaluator load(File file) throws IOException {
+    try (InputStream in = new FileInputStream(file)) {
+      return load(in);
+    }
+  }
+
+  /**
+   * Load network from the weights stream. The stream is not closed.
+   */
+  public static JavaEvaluator load(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a network weights file");
+    }
+    Layer[] trunk = readLayers(data);
+    Layer[] policyHead = readLayers(data);
+    Layer[] valueHead = readLayers(data);
+    try {
+      return new JavaEvaluator(trunk, policyHead, valueHead);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid network: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Return evaluator sharing the weights of this one, with buffers of its own. The copies can run
+   * on different threads at once, e.g. one per search thread.
+   */
+  public JavaEvaluator copy() {
+    return new JavaEvaluator(trunk, policyHead, valueHead);
+  }
+
+  @Override
+  public float predict(float[] pi, float[] canonicalBoard) {
+    if (pi == null || pi.length != BOARD_SIZE) {
+      throw new IllegalArgumentException("Invalid argument 'pi'");
+    }
+    return forward(pi, 0, canonicalBoard, 0);
+  }
+
+  @Override
+  public void predict(float[] pi, float[] value, float[] boards, int batch) {
+    if (pi == null || pi.length < batch * BOARD_SIZE) {
+      throw new IllegalArgumentException("Invalid argument 'pi'");
+    }
+    if (value == null || value.length < batch) {
+      throw new IllegalArgumentException("Invalid argument 'value'");
+    }
+    for (int i = 0; i < batch; i++) {
+      value[i] = forward(pi, i * BOARD_SIZE, boards, i * BOARD_SIZE);
+    }
+  }
+
+  /**
+   * Run the network on one board
+   */
+  private float forward(float[] pi, int piOffset, float[] boards, int boardOffset) {
+    float[] in = trunkA;
+    float[] out = trunkB;
+    float[] swap;
+    System.arraycopy(boards, boardOffset, in, 0, BOARD_SIZE);
+    for (Layer layer : trunk) {
+      layer.forward(in, out, scratch);
+      swap = in;
+      in = out;
+      out = swap;
+    }
+    float[] policy = runHead(policyHead, in);
+    System.arraycopy(policy, 0, pi, piOffset, BOARD_SIZE);
+    return runHead(valueHead, in)[0];
+  }
+
+  /**
+   * Run head on the trunk output, which is left intact. Return buffer holding the result.
+   */
+  private float[] runHead(Layer[] head, float[] trunkOutput) {
+    float[] in = trunkOutput;
+    float[] out = headA;
+    for (Layer layer : head) {
+      layer.forward(in, out, scratch);
+      in = out;
+      out = out == headA ? headB : headA;
+    }
+    return in;
+  }
+
+  /**
+   * Check that layers chain, return output size of the last one
+   */
+  private static int checkShapes(Layer[] layers, int inputSize) {
+    int size = inputSize;
+    for (Layer layer : layers) {
+      if (layer.inputSize != size) {
+        throw new IllegalArgumentException(
+            "Layer expects " + layer.inputSize + " inputs, got " + size);
+      }
+      size = layer.outputSize;
+    }
+    return size;
+  }
+
+  /* LOADING ------------------------------------------------------------------------------------ */
+
+  private static Layer[] readLayers(DataInputStream data) throws IOException {
+    int count = data.readInt();
+    if (count < 0 || count > MAX_LAYERS) {
+      throw new IOException("Invalid layer count: " + count);
+    }
+    Layer[] layers = new Layer[count];
+    for (int i = 0; i < count; i++) {
+      int type = data.readInt();
+      switch (type) {
+        case CONV:
+          layers[i] = readConv(data);
+          break;
+        case RESIDUAL:
+          layers[i] = readResidual(data);
+          break;
+        case DENSE:
+          layers[i] = readDense(data);
+          break;
+        default:
+          throw new IOException("Unknown layer type: " + type);
+      }
+    }
+    return layers;
+  }
+
+  private static Conv readConv(DataInputStream data) throws IOException {
+    int in = readDim(data);
+    int out = readDim(data);
+    int kernel = readKernel(data);
+    int activation = readActivation(data);
+    long weights = (long) out * in * kernel * kernel;
+    return new Conv(in, out, kernel, activation, readFloats(data, weights),
+        readFloats(data, out));
+  }
+
+  private static Residual readResidual(DataInputStream data) throws IOException {
+    int channels = readDim(data);
+    int kernel = readKernel(data);
+    long weights = (long) channels * channels * kernel * kernel;
+    Conv conv1 = new Conv(channels, channels, kernel, RELU, readFloats(data, weights),
+        readFloats(data, channels));
+    Conv conv2 = new Conv(channels, channels, kernel, NONE, readFloats(data, weights),
+        readFloats(data, channels));
+    return new Residual(conv1, conv2);
+  }
+
+  private static Dense readDense(DataInputStream data) throws IOException {
+    int in = readDim(data);
+    int out = readDim(data);
+    int activation = readActivation(data);
+    return new Dense(in, out, activation, readFloats(data, (long) out * in),
+        readFloats(data, out));
+  }
+
+  private static int readDim(DataInputStream data) throws IOException {
+    int dim = data.readInt();
+    if (dim <= 0 || dim > MAX_DIM) {
+      throw new IOException("Invalid dimension: " + dim);
+    }
+    return dim;
+  }
+
+  private static int readKernel(DataInputStream data) throws IOException {
+    int kernel = data.readInt();
+    if (kernel <= 0 || kernel > N || kernel % 2 == 0) {
+      throw new IOException("Invalid kernel size: " + kernel);
+    }
+    return kernel;
+  }
+
+  private static int readActivation(DataInputStream data) throws IOException {
+    int activation = data.readInt();
+    if (activation < NONE || activation > SOFTMAX) {
+      throw new IOException("Unknown activation: " + activation);
+    }
+    return activation;
+  }
+
+  /**
+   * Read tensor of the given size, rejecting oversized ones before allocating
+   */
+  private static float[] readFloats(DataInputStream data, long count) throws IOException {
+    if (count > MAX_TENSOR) {
+      throw new IOException("Tensor too large: " + count);
+    }
+    float[] floats = new float[(int) count];
+    for (int i = 0; i < count; i++) {
+      floats[i] = data.readFloat();
+    }
+    return floats;
+  }
+
+  /* LAYERS ------------------------------------------------------------------------------------- */
+
+  private abstract static class Layer {
+
+    final int inputSize;
+    final int outputSize;
+
+    Layer(int inputSize, int outputSize) {
+      this.inputSize = inputSize;
+      this.outputSize = outputSize;
+    }
+
+    /**
+     * Compute output of the layer
+     *
+     * @param scratch Buffer the layer may use for intermediate results
+     */
+    abstract void forward(float[] in, float[] out, float[] scratch);
+  }
+
+  /**
+   * Convolution with same padding over the board
+   */
+  private static final class Conv extends Layer {
+
+    final int in;
+    final int out;
+    final int kernel;
+    final int activation;
+    final float[] weights;
+    final float[] bias;
+
+    Conv(int in, int out, int kernel, int activation, float[] weights, float[] bias) {
+      super(in * BOARD_SIZE, out * BOARD_SIZE);
+      this.in = in;
+      this.out = out;
+      this.kernel = kernel;
+      this.activation = activation;
+      this.weights = weights;
+      this.bias = bias;
+    }
+
+    @Override
+    void forward(float[] input, float[] output, float[] scratch) {
+      int pad = kernel / 2;
+      for (int oc = 0; oc < out; oc++) {
+        for (int y = 0; y < N; y++) {
+          for (int x = 0; x < N; x++) {
+            float sum = bias[oc];
+            for (int ic = 0; ic < in; ic++) {
+              int w = (oc * in + ic) * kernel * kernel;
+              int plane = ic * BOARD_SIZE;
+              for (int ky = 0; ky < kernel; ky++) {
+                int row = y + ky - pad;
+                if (row < 0 || row >= N) {
+                  continue;
+                }
+                for (int kx = 0; kx < kernel; kx++) {
+                  int col = x + kx - pad;
+                  if (col >= 0 && col < N) {
+                    sum += weights[w + ky * kernel + kx] * input[plane + row * N + col];
+                  }
+                }
+              }
+            }
+            output[oc * BOARD_SIZE + y * N + x] = sum;
+          }
+        }
+      }
+      activate(output, outputSize, activation);
+    }
+  }
+
+  /**
+   * Residual block of two convolutions
+   */
+  private static final class Residual extends Layer {
+
+    final Conv conv1;
+    final Conv conv2;
+
+    Residual(Conv conv1, Conv conv2) {
+      super(conv1.inputSize, conv2.outputSize);
+      this.conv1 = conv1;
+      this.conv2 = conv2;
+    }
+
+    @Override
+    void forward(float[] in, float[] out, float[] scratch) {
+      conv1.forward(in, scratch, null);
+      conv2.forward(scratch, out, null);
+      for (int i = 0; i < outputSize; i++) {
+        out[i] = Math.max(out[i] + in[i], 0);
+      }
+    }
+  }
+
+  /**
+   * Fully connected layer
+   */
+  private static final class Dense extends Layer {
+
+    final int activation;
+    final float[] weights;
+    final float[] bias;
+
+    Dense(int in, int out, int activation, float[] weights, float[] bias) {
+      super(in, out);
+      this.activation = activation;
+      this.weights = weights;
+      this.bias = bias;
+    }
+
+    @Override
+    void forward(float[] in, float[] out, float[] scratch) {
+      for (int o = 0, w = 0; o < outputSize; o++) {
+        float sum = bias[o];
+        for (int i = 0; i < inputSize; i++, w++) {
+          sum += weights[w] * in[i];
+        }
+        out[o] = sum;
+      }
+      activate(out, outputSize, activation);
+    }
+  }
+
+  private static void activate(float[] values, int size, int activation) {
+    switch (activation) {
+      case RELU:
+        for (int i = 0; i < size; i++) {
+          values[i] = Math.max(values[i], 0);
+        }
+        break;
+      case TANH:
+        for (int i = 0; i < size; i++) {
+          values[i] = (float) Math.tanh(values[i]);
+        }
+        break;
+      case SOFTMAX:
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+          max = Math.max(max, values[i]);
+        }
+        float sum = 0;
+        for (int i = 0; i < size; i++) {
+          values[i] = (float) Math.exp(values[i] - max);
+          sum += values[i];
+        }
+        for (int i = 0; i < size; i++) {
+          values[i] /= sum;
+        }
+        break;
+      default:
+        break;
+    }
+  }
+}
@@ -0,0 +1,617 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import java.util.Random;
+
+/**
+ * Monte Carlo tree search
+ */
+
+public class Mcts implements SearchEngine {
+
+  private static final String TAG = "MCTS";
+
+  private static final double C_UCT = 1.41;
+  private static final SearchLimits DEFAULT_LIMITS = SearchLimits.ofTime(5000);
+  private static final long PONDER_MEMORY = 256 << 20;
+  private static final int COMPACTION_NODES = 1 << 16;  // smallest tree worth compacting
+
+  private TranspositionTable table = new TranspositionTable(0);  // sized by the first search
+  private SearchTree tree = new SearchTree(false);
+  private int root = SearchTree.NONE;
+  private int compactionNodes = COMPACTION_NODES;  // tree size triggering the next compaction
+
+  private final WorkerPool pool;
+  private final Worker[] workers;
+  private final SearchBudget budget = new SearchBudget();
+  private SearchLimits limits = DEFAULT_LIMITS;
+  private final Object ponderLock = new Object();
+  private PonderTask ponderTask;  // guarded by ponderLock
+  private final Runnable compaction = new Runnable() {
+    @Override
+    public void run() {
+      compactTree();
+    }
+  };
+  private SearchMonitor monitor = SearchMonitor.NONE;
+  private boolean verifyKeys;
+  private Logger logger = new Logger(SearchLogger.NONE);
+
+  public Mcts() {
+    this(1);
+  }
+
+  /**
+   * @param threads Number of threads searching the shared tree
+   */
+  public Mcts(int threads) {
+    this(threads, new Random().nextLong());
+  }
+
+  /**
+   * @param threads Number of threads searching the shared tree
+   * @param seed    Seed of the rollout random generators
+   */
+  public Mcts(int threads, long seed) {
+    pool = new WorkerPool(threads);
+    workers = new Worker[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Worker(new RolloutEngine(seed + i));
+    }
+  }
+
+  /**
+   * Set limits of the following searches, 5 seconds by default
+   */
+  @Override
+  public void setLimits(SearchLimits limits) {
+    this.limits = limits;
+  }
+
+  @Override
+  public void setMonitor(SearchMonitor monitor) {
+    this.monitor = monitor;
+  }
+
+  /**
+   * Enable or disable key collision verification, meant for tests. When enabled, the engine
+   * compares positions of the states sharing a key and fails on a collision.
+   */
+  public void setKeyVerification(boolean enabled) {
+    verifyKeys = enabled;
+  }
+
+  /**
+   * Set move choice of the rollouts
+   */
+  public void setRolloutPolicy(RolloutPolicy policy) {
+    for (Worker worker : workers) {
+      worker.rollouts.setPolicy(policy);
+    }
+  }
+
+  /**
+   * Set destination of the search statistics output
+   */
+  public void setLogger(SearchLogger logger) {
+    this.logger = new Logger(logger);
+  }
+
+  /**
+   * Perform MCTS simulations starting from current game state.
+   * Return a vector of MCTS score over all actions.
+   */
+  @Override
+  public int[] getDistribution(State state) {
+    SearchMonitor monitor = this.monitor;  // a monitor set meanwhile is for the next search
+    stopPondering();
+    setRoot(state, limits);
+    // Explore the tree
+    logger.printDivider("Tree exploration");
+    Worker worker = startWorkers(limits);
+    pool.start(workers);
+    while (!isSolved() && budget.acquire(1) > 0) {
+      if (monitor.isCancelled()) {  // task is aborted, bail out
+        stopWorkers();
+        return new int[0];
+      }
+      monitor.onProgressUpdate(budget.getProgress());
+      simulate(worker);
+      worker.iterations++;
+    }
+    int iter = stopWorkers();
+    // Return visit counts, mapping actions of the root node to actions of the state
+    int[] visitCounts = new int[Game.board_size];
+    State rootState = tree.getState(root);
+    int proof = tree.getProof(root);
+    int first = tree.getFirstEdge(root);
+    for (int edge = first; edge < first + tree.getEdgeCount(root); edge++) {
+      int childProof = tree.getChildProof(edge);
+      if (proof == SearchTree.WIN ? childProof != SearchTree.LOSS
+          : proof == SearchTree.UNKNOWN && childProof == SearchTree.WIN) {
+        continue;  // keep only winning moves of a won position, drop moves proven to lose
+      }
+      int action = state.fromCanonicalAction(rootState.toCanonicalAction(tree.getAction(edge)));
+      visitCounts[action] = tree.getVisits(edge);
+    }
+    logger.printChildren(tree, root);
+    logger.printDivider("Iterations: " + iter);
+    if (tree.getNodeCount() >= compactionNodes) {
+      pool.submitBackground(compaction);
+    }
+    return visitCounts;
+  }
+
+  /**
+   * Search from the state in the background until the next search or {@link #stopPondering}.
+   * Pondering on the opponent's turn grows the tree, and the next search reuses it. Pondering
+   * stops by itself at the node and memory limits, or at {@code PONDER_MEMORY} if none are set.
+   * The call returns at once: re-rooting and the search run on the background thread.
+   */
+  @Override
+  public void ponder(State state) {
+    cancelPondering();
+    if (state.isFinished()) {
+      return;
+    }
+    PonderTask task = new PonderTask(state);
+    synchronized (ponderLock) {
+      ponderTask = task;
+    }
+    pool.submitBackground(task);
+  }
+
+  /**
+   * Stop pondering and wait for the background thread to finish its work
+   */
+  @Override
+  public void stopPondering() {
+    cancelPondering();
+    pool.awaitBackground();
+  }
+
+  /**
+   * Stop threads of the search
+   */
+  @Override
+  public void shutdown() {
+    stopPondering();
+    pool.shutdown();
+  }
+
+  /**
+   * Set root node of the search, reusing the tree if it holds the state and is within the limits.
+   * The table is sized for the limits. It grows with a reused tree, which is compacted into it,
+   * and shrinks only with a new tree, so that searches and pondering with different limits don't
+   * resize it back and forth.
+   */
+  private void setRoot(State state, SearchLimits limits) {
+    long tableMemory = TranspositionTable.getMemoryBudget(limits, PONDER_MEMORY);
+    int node = findNode(state);
+    if (node != SearchTree.NONE) {
+      root = node;
+      pruneTree();
+      if (tableMemory > table.getMemoryBudget()) {
+        table = new TranspositionTable(tableMemory);  // refilled by the compaction
+        compactTree();
+      } else if (limits.isExceededBy(tree)) {
+        compactTree();
+      }
+    }
+    if (node == SearchTree.NONE || limits.isExceededBy(tree)) {
+      if (tableMemory != table.getMemoryBudget()) {
+        table = new TranspositionTable(tableMemory);
+      }
+      createTree(state);
+    }
+  }
+
+  /**
+   * Stop pondering, without waiting for the background thread
+   */
+  @Override
+  public void cancelPondering() {
+    synchronized (ponderLock) {
+      if (ponderTask != null) {
+        ponderTask.cancelled = true;
+        ponderTask = null;
+        budget.stop();
+      }
+    }
+  }
+
+  /**
+   * Return proof of the root of the last search: {@link SearchTree#WIN}, {@link SearchTree#LOSS}
+   * or {@link SearchTree#UNKNOWN}. Must not be called during a search.
+   */
+  int getRootProof() {
+    return tree.getProof(root);
+  }
+
+  /**
+   * Return tree of the last search, for tests. Must not be called during a search.
+   */
+  SearchTree getTree() {
+    return tree;
+  }
+
+  /**
+   * Return root node of the last search in {@link #getTree}
+   */
+  int getRoot() {
+    return root;
+  }
+
+  /**
+   * Return transposition table of the tree, for tests. Must not be called during a search.
+   */
+  TranspositionTable getTable() {
+    return table;
+  }
+
+  /**
+   * Return true if the result of the root is proven, so that further search can't change it
+   */
+  private boolean isSolved() {
+    return tree.getProof(root) != SearchTree.UNKNOWN;
+  }
+
+  /**
+   * Prepare workers for a search under the limits and return the worker of the calling thread
+   */
+  private Worker startWorkers(SearchLimits limits) {
+    budget.start(limits, tree, root);
+    for (Worker worker : workers) {
+      worker.iterations = 0;
+    }
+    return workers[0];
+  }
+
+  /**
+   * Stop search threads and return total number of simulations
+   */
+  private int stopWorkers() {
+    budget.stop();
+    pool.await();
+    int iterations = 0;
+    for (Worker worker : workers) {
+      iterations += worker.iterations;
+    }
+    return iterations;
+  }
+
+  /**
+   * Move to leaf node, evaluate it, and back propagate the value
+   */
+  private void simulate(Worker worker) {
+    int leaf = moveToLeaf(worker);
+    State state = tree.getState(leaf);
+    int value;
+    if (state.isFinished()) {
+      value = state.getValue();
+    } else {
+      value = worker.rollouts.rollout(state);
+      if (worker.expand) {
+        expandNode(leaf);
+      }
+    }
+    backPropagate(worker, leaf, value);
+  }
+
+  /**
+   * Move down the tree until hit a leaf node, recording the path. Edges on the path get a
+   * virtual loss until the value is back propagated.
+   */
+  private int moveToLeaf(Worker worker) {
+    int node = root;
+    int bestEdge;
+    int child;
+    worker.pathLength = 0;
+    while (true) {
+      synchronized (tree.getLock(node)) {
+        if (tree.isLeaf(node)) {
+          worker.expand = tree.claimExpansion(node);
+          return node;
+        }
+        bestEdge = getBestEdge(node);
+        tree.addVirtualLoss(bestEdge);
+        child = tree.getChild(bestEdge);
+        if (child == SearchTree.NONE) {
+          child = addChild(node, bestEdge);
+        }
+      }
+      worker.pathNodes[worker.pathLength] = node;
+      worker.pathEdges[worker.pathLength] = bestEdge;
+      worker.pathLength++;
+      node = child;
+    }
+  }
+
+  /**
+   * Expand node claimed by the calling thread
+   */
+  private void expandNode(int node) {
+    State state = tree.getState(node);
+    long validActions = state.getValidActions();
+    int count = Long.bitCount(validActions);
+    int first = tree.addEdges(count);
+    int edge = first;
+    int action;
+    for (long actions = validActions; actions != 0; actions &= actions - 1, edge++) {
+      action = Long.numberOfTrailingZeros(actions);
+      tree.setEdge(edge, action, SearchTree.NONE, 0);
+    }
+    synchronized (tree.getLock(node)) {
+      tree.setEdges(node, first, count);
+    }
+  }
+
+  /**
+   * Add child node of the edge, or link the edge to the node of the same position if the tree
+   * has one. Must be called holding the parent node lock.
+   */
+  private int addChild(int node, int edge) {
+    State newState = tree.getState(node).getNextState(tree.getAction(edge));
+    long key = newState.getSymmetricKey();
+    int newNode;
+    synchronized (table.getLock(key)) {  // one node per position, however many parents
+      newNode = table.get(key);
+      if (newNode != SearchTree.NONE) {
+        if (verifyKeys) {
+          Game.verifyKey(tree.getState(newNode), newState);
+        }
+      } else {
+        newNode = tree.addNode(newState);
+        if (newState.isFinished() && newState.getValue() == -1) {
+          tree.setProof(newNode, SearchTree.LOSS);
+        }
+        table.put(key, newNode, newState.getMoveCount());
+      }
+    }
+    tree.setChild(edge, newNode);
+    return newNode;
+  }
+
+  /**
+   * Back propagate the value up the tree, along with the proven result of the leaf while the
+   * nodes on the path become proven
+   */
+  private void backPropagate(Worker worker, int leaf, int value) {
+    int player = tree.getState(leaf).getPlayer();
+    boolean proving = tree.getProof(leaf) != SearchTree.UNKNOWN;
+    int node;
+    for (int i = worker.pathLength - 1; i >= 0; i--) {
+      node = worker.pathNodes[i];
+      int edgePlayer = tree.getState(node).getPlayer();
+      synchronized (tree.getLock(node)) {
+        tree.update(worker.pathEdges[i], edgePlayer == player ? value : -value);
+        if (proving) {
+          proving = tree.prove(node, worker.pathEdges[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Pick edge with highest upper confidence bound
+   */
+  private int getBestEdge(int node) {
+    int first = tree.getFirstEdge(node);
+    int last = first + tree.getEdgeCount(node);
+    int nodeVisits = 0;
+    for (int edge = first; edge < last; edge++) {
+      nodeVisits += tree.getVisits(edge);
+    }
+    double logVisits = Math.log(nodeVisits);
+    double max_u = -Double.MAX_VALUE;
+    double u;
+    int n;
+    int best_edge = SearchTree.NONE;
+    int childProof;
+    for (int edge = first; edge < last; edge++) {
+      childProof = tree.getChildProof(edge);
+      if (childProof == SearchTree.LOSS) {  // winning move
+        return edge;
+      }
+      if (childProof == SearchTree.WIN) {  // losing move
+        continue;
+      }
+      n = tree.getVisits(edge);
+      if (n == 0) {
+        return edge;
+      }
+      u = tree.getValueSum(edge) / n + C_UCT * Math.sqrt(logVisits / n);
+      if (u > max_u) {
+        max_u = u;
+        best_edge = edge;
+      }
+    }
+    return best_edge != SearchTree.NONE ? best_edge : first;  // all moves lose
+  }
+
+  /**
+   * Find node of the state in the tree. Look it up in the table first, and fall back to the
+   * nodes one or two moves below the root in case the entry was replaced. The node may hold a
+   * symmetric image of the state.
+   */
+  private int findNode(State state) {
+    int node = table.get(state.getSymmetricKey());
+    if (node == SearchTree.NONE && root != SearchTree.NONE) {
+      node = findDescendant(state.getSymmetricKey());
+    }
+    if (node != SearchTree.NONE && verifyKeys) {
+      Game.verifyKey(tree.getState(node), state);
+    }
+    return node;
+  }
+
+  private int findDescendant(long key) {
+    int first = tree.getFirstEdge(root);
+    for (int edge = first; edge < first + tree.getEdgeCount(root); edge++) {
+      int child = tree.getChild(edge);
+      if (child == SearchTree.NONE) {
+        continue;
+      }
+      if (tree.getState(child).getSymmetricKey() == key) {
+        return child;
+      }
+      int childFirst = tree.getFirstEdge(child);
+      for (int childEdge = childFirst; childEdge < childFirst + tree.getEdgeCount(child);
+           childEdge++) {
+        int grandchild = tree.getChild(childEdge);
+        if (grandchild != SearchTree.NONE
+            && tree.getState(grandchild).getSymmetricKey() == key) {
+          return grandchild;
+        }
+      }
+    }
+    return SearchTree.NONE;
+  }
+
+  /**
+   * Create a new tree
+   */
+  private void createTree(State state) {
+    table.clear();
+    tree.reset();
+    root = tree.addNode(state);
+    table.put(state.getSymmetricKey(), root, state.getMoveCount());
+    compactionNodes = COMPACTION_NODES;
+  }
+
+  /**
+   * Keep only subtree of the node. The rest is not copied or walked: table entries left behind
+   * age out with the generation and get replaced by new nodes, and unreachable nodes stay in the
+   * tree until {@link #compactTree}.
+   */
+  private void pruneTree() {
+    table.nextGeneration();
+    State state = tree.getState(root);
+    table.put(state.getSymmetricKey(), root, state.getMoveCount());
+  }
+
+  /**
+   * Copy subtree of the root into a new tree, reclaiming nodes unreachable from the root, and
+   * refill the table with the copied nodes. The tree is compacted on the background thread when it
+   * has doubled since the last compaction, so the cost is amortized over the nodes added
+   * meanwhile and stays off the move. A tree over the search limits is compacted at once.
+   */
+  private void compactTree() {
+    tree = tree.copySubtree(root);
+    root = 0;
+    table.clear();
+    for (int node = 0; node < tree.getNodeCount(); node++) {
+      State state = tree.getState(node);
+      table.put(state.getSymmetricKey(), node, state.getMoveCount());
+    }
+    compactionNodes = Math.max(2 * tree.getNodeCount(), COMPACTION_NODES);
+  }
+
+  /**
+   * Background search on the opponent's turn
+   */
+  private final class PonderTask implements Runnable {
+
+    final State state;
+    boolean cancelled;  // guarded by ponderLock
+
+    PonderTask(State state) {
+      this.state = state;
+    }
+
+    @Override
+    public void run() {
+      SearchLimits ponderLimits = limits.getPonderLimits(PONDER_MEMORY);
+      setRoot(state, ponderLimits);
+      if (tree.getNodeCount() >= compactionNodes) {
+        compactTree();
+      }
+      Worker worker;
+      synchronized (ponderLock) {
+        if (cancelled) {
+          return;
+        }
+        worker = startWorkers(ponderLimits);
+      }
+      pool.start(workers);
+      worker.run();
+      logger.printDivider("Pondering iterations: " + stopWorkers());
+    }
+  }
+
+  /**
+   * Search thread context
+   */
+  private final class Worker implements Runnable {
+
+    final int[] pathNodes = new int[Game.board_size + 1];
+    final int[] pathEdges = new int[Game.board_size + 1];
+    final RolloutEngine rollouts;
+    int pathLength;
+    boolean expand;  // leaf is claimed for expansion
+    int iterations;
+
+    Worker(RolloutEngine rollouts) {
+      this.rollouts = rollouts;
+    }
+
+    @Override
+    public void run() {
+      while (!isSolved() && budget.acquire(1) > 0) {
+        simulate(this);
+        iterations++;
+      }
+    }
+  }
+
+  private static class Logger {
+
+    private final SearchLogger log;
+
+    Logger(SearchLogger log) {
+      this.log = log;
+    }
+
+    void printDivider(String msg) {
+      if (log == SearchLogger.NONE) {
+        return;
+      }
+      String div = "------------------------------------------------";
+      if (msg != null && msg.length() > 0) {
+        div = msg + " " + div.substring(msg.length() + 1);
+      }
+      log.log(TAG, div);
+    }
+
+    void printChildren(SearchTree tree, int node) {
+      if (log == SearchLogger.NONE) {
+        return;
+      }
+      if (tree.isLeaf(node)) {
+        log.log(TAG, "Node has no children");
+        return;
+      }
+      int first = tree.getFirstEdge(node);
+      int last = first + tree.getEdgeCount(node);
+      int nodeVisits = 0;
+      for (int edge = first; edge < last; edge++) {
+        nodeVisits += tree.getVisits(edge);
+      }
+      log.log(TAG, "  Action       N       W           Q           U");
+      StringBuilder sb;
+      for (int edge = first; edge < last; edge++) {
+        double q = tree.getQ(edge);
+        double u = q + Mcts.C_UCT * Math.sqrt(Math.log(nodeVisits) / tree.getVisits(edge));
+        sb = new StringBuilder();
+        sb.append(String.format("%8d", tree.getAction(edge)));
+        sb.append(String.format("%8d", tree.getVisits(edge)));
+        sb.append(String.format("%8.0f", tree.getValueSum(edge)));
+        sb.append(String.format("%12.6f", q));
+        sb.append(String.format("%12.6f", u));
+        log.log(TAG, sb.toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+/**
+ * Root-parallel search: independent engines search their own trees from the same root on
+ * separate threads, and their visit counts are summed up.
+ * <p>
+ * Engines share no statistics, so there is no lock contention between them. Each engine keeps
+ * its tree between moves. Give the engines different seeds to make their trees diverge.
+ */
+public class MctsEnsemble implements SearchEngine {
+
+  private static final float ROOT_NOISE = 0.25f;
+
+  private final SearchEngine[] engines;
+  private final int[][] distributions;
+  private final Runnable[] tasks;
+  private final WorkerPool pool;
+  private State state;
+
+  public MctsEnsemble(SearchEngine... engines) {
+    if (engines.length == 0) {
+      throw new IllegalArgumentException("Ensemble is empty");
+    }
+    this.engines = engines;
+    distributions = new int[engines.length][];
+    tasks = new Runnable[engines.length];
+    for (int i = 0; i < engines.length; i++) {
+      final int index = i;
+      tasks[i] = new Runnable() {
+        @Override
+        public void run() {
+          distributions[index] = MctsEnsemble.this.engines[index].getDistribution(state);
+        }
+      };
+    }
+    pool = new WorkerPool(engines.length);
+  }
+
+  /**
+   * Create ensemble of UCT engines with different seeds
+   */
+  public static MctsEnsemble ofMcts(int size, long seed) {
+    SearchEngine[] engines = new SearchEngine[size];
+    for (int i = 0; i < size; i++) {
+      engines[i] = new Mcts(1, seed + i);
+    }
+    return new MctsEnsemble(engines);
+  }
+
+  /**
+   * Create ensemble of probabilistic engines, one per evaluator. Engines diverge by noise mixed
+   * into their root priors.
+   *
+   * @param evaluators Evaluator of each engine. Evaluators must be distinct, so that the engines
+   *                   evaluate in parallel, e.g. {@link JavaEvaluator#copy}s of one network.
+   */
+  public static MctsEnsemble ofMctsP(Evaluator[] evaluators, long seed) {
+    SearchEngine[] engines = new SearchEngine[evaluators.length];
+    for (int i = 0; i < evaluators.length; i++) {
+      for (int j = 0; j < i; j++) {
+        if (evaluators[i] == evaluators[j]) {
+          throw new IllegalArgumentException("Engines " + j + " and " + i + " share evaluator");
+        }
+      }
+      MctsP engine = new MctsP(evaluators[i], 1);
+      engine.setRootNoise(ROOT_NOISE, seed + i);
+      engines[i] = engine;
+    }
+    return new MctsEnsemble(engines);
+  }
+
+  /**
+   * Ponder with every engine
+   */
+  @Override
+  public void ponder(State state) {
+    for (SearchEngine engine : engines) {
+      engine.ponder(state);
+    }
+  }
+
+  @Override
+  public void stopPondering() {
+    for (SearchEngine engine : engines) {
+      engine.stopPondering();
+    }
+  }
+
+  @Override
+  public void cancelPondering() {
+    for (SearchEngine engine : engines) {
+      engine.cancelPondering();
+    }
+  }
+
+  /**
+   * Set limits of every engine
+   */
+  @Override
+  public void setLimits(SearchLimits limits) {
+    for (SearchEngine engine : engines) {
+      engine.setLimits(limits);
+    }
+  }
+
+  /**
+   * Set monitor of every engine
+   */
+  @Override
+  public void setMonitor(SearchMonitor monitor) {
+    for (SearchEngine engine : engines) {
+      engine.setMonitor(monitor);
+    }
+  }
+
+  /**
+   * Search from the state with every engine and merge visit counts
+   */
+  @Override
+  public int[] getDistribution(State state) {
+    this.state = state;
+    pool.start(tasks);
+    tasks[0].run();
+    pool.await();
+    int[] visits = new int[Game.board_size];
+    for (int[] distribution : distributions) {
+      if (distribution == null || distribution.length == 0) {  // search was cancelled
+        return distribution;
+      }
+      for (int i = 0; i < visits.length; i++) {
+        visits[i] += distribution[i];
+      }
+    }
+    return visits;
+  }
+
+  @Override
+  public void shutdown() {
+    pool.shutdown();
+    for (SearchEngine engine : engines) {
+      engine.shutdown();
+    }
+  }
+}
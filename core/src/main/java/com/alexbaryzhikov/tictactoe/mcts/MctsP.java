@@ -0,0 +1,721 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Probabilistic Monte Carlo tree search
+ * <p>
+ * Search threads share the tree. Evaluation dominates a simulation, so threads scale only with
+ * an evaluator of their own, see {@link #MctsP(Evaluator[])}.
+ */
+
+public class MctsP implements SearchEngine {
+
+  private static final double C_PUCT = 1.41;
+  private static final int COMPACTION_NODES = 1 << 16;  // smallest tree worth compacting
+  private static final long CACHE_MEMORY = 4 << 20;
+  private static final SearchLimits DEFAULT_LIMITS = SearchLimits.ofSimulations(1000);
+  private static final long PONDER_MEMORY = 64 << 20;
+
+  private TranspositionTable table = new TranspositionTable(0);  // sized by the first search
+  private SearchTree tree = new SearchTree(true);
+  private int root = SearchTree.NONE;
+  private int compactionNodes = COMPACTION_NODES;  // tree size triggering the next compaction
+  private EvaluationCache cache = new EvaluationCache(CACHE_MEMORY);
+
+  private final WorkerPool pool;
+  private final Evaluator[] evaluators;  // of each worker
+  private final Worker[] workers;
+  private final SearchBudget budget = new SearchBudget();
+  private SearchLimits limits = DEFAULT_LIMITS;
+  private final Object ponderLock = new Object();
+  private PonderTask ponderTask;  // guarded by ponderLock
+  private final Runnable compaction = new Runnable() {
+    @Override
+    public void run() {
+      compactTree();
+    }
+  };
+  private int batchSize = 1;
+  private SearchMonitor monitor = SearchMonitor.NONE;
+  private boolean verifyKeys;
+
+  private final float[] rootNoise = new float[Game.board_size];
+  private float noiseFraction;
+  private Random noiseRandom;
+
+  public MctsP(Evaluator evaluator) {
+    this(evaluator, 1);
+  }
+
+  /**
+   * Threads share one evaluator and take turns with it, so inference doesn't run in parallel.
+   * Use {@link #MctsP(Evaluator[])} to scale the evaluation with the threads.
+   *
+   * @param evaluator Evaluator, may be shared with other engines
+   * @param threads   Number of threads searching the shared tree
+   */
+  public MctsP(Evaluator evaluator, int threads) {
+    this(fill(evaluator, threads));
+  }
+
+  /**
+   * @param evaluators Evaluator of each thread searching the shared tree. Distinct evaluators
+   *                   run in parallel, calls to the same one are serialized.
+   */
+  public MctsP(Evaluator[] evaluators) {
+    pool = new WorkerPool(evaluators.length);
+    this.evaluators = evaluators.clone();
+    workers = new Worker[evaluators.length];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Worker(batchSize, this.evaluators[i]);
+    }
+  }
+
+  private static Evaluator[] fill(Evaluator evaluator, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: " + threads);
+    }
+    Evaluator[] evaluators = new Evaluator[threads];
+    Arrays.fill(evaluators, evaluator);
+    return evaluators;
+  }
+
+  /**
+   * Set limits of the following searches, 1000 simulations by default
+   */
+  @Override
+  public void setLimits(SearchLimits limits) {
+    this.limits = limits;
+  }
+
+  @Override
+  public void setMonitor(SearchMonitor monitor) {
+    this.monitor = monitor;
+  }
+
+  /**
+   * Enable or disable key collision verification, meant for tests. When enabled, the engine
+   * compares positions of the states sharing a key and fails on a collision.
+   */
+  public void setKeyVerification(boolean enabled) {
+    verifyKeys = enabled;
+  }
+
+  /**
+   * Set number of leaves evaluated in one inference call. Larger batches cut per-call overhead,
+   * but each leaf is selected without the values of the other leaves of its batch, which
+   * weakens the search for the same number of simulations.
+   */
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+    }
+    this.batchSize = batchSize;
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Worker(batchSize, evaluators[i]);
+    }
+  }
+
+  /**
+   * Perform MCTS simulations starting from current game state.
+   * Return a vector of MCTS score over all actions.
+   *
+   * @param state Root game state
+   * @return Actions visit counts
+   */
+  @Override
+  public int[] getDistribution(State state) {
+    SearchMonitor monitor = this.monitor;  // a monitor set meanwhile is for the next search
+    stopPondering();
+    setRoot(state, limits);
+
+    // Explore the tree
+    Worker worker = startWorkers(limits);
+    pool.start(workers);
+    int count;
+    while (!isSolved() && (count = budget.acquire(batchSize)) > 0) {
+      if (monitor.isCancelled()) {  // task is aborted, bail out
+        stopWorkers();
+        return null;
+      }
+      monitor.onProgressUpdate(budget.getProgress());
+      simulate(worker, count);
+    }
+    stopWorkers();
+
+    // Return visit counts, mapping actions of the root node to actions of the state
+    int[] visits = new int[Game.board_size];
+    State rootState = tree.getState(root);
+    int proof = tree.getProof(root);
+    int first = tree.getFirstEdge(root);
+    for (int edge = first; edge < first + tree.getEdgeCount(root); edge++) {
+      int childProof = tree.getChildProof(edge);
+      if (proof == SearchTree.WIN ? childProof != SearchTree.LOSS
+          : proof == SearchTree.UNKNOWN && childProof == SearchTree.WIN) {
+        continue;  // keep only winning moves of a won position, drop moves proven to lose
+      }
+      int action = state.fromCanonicalAction(rootState.toCanonicalAction(tree.getAction(edge)));
+      visits[action] = tree.getVisits(edge);
+    }
+    if (tree.getNodeCount() >= compactionNodes) {
+      pool.submitBackground(compaction);
+    }
+    return visits;
+  }
+
+  /**
+   * Set cache of evaluator results, may be shared with other engines. Null disables caching.
+   */
+  public void setEvaluationCache(EvaluationCache cache) {
+    this.cache = cache;
+  }
+
+  public EvaluationCache getEvaluationCache() {
+    return cache;
+  }
+
+  /**
+   * Mix random noise into the root priors, so that engines searching the same position explore
+   * differently. Noise is drawn from a flat Dirichlet distribution over valid actions.
+   *
+   * @param fraction Weight of the noise, 0 disables it
+   * @param seed     Seed of the noise random generator
+   */
+  public void setRootNoise(float fraction, long seed) {
+    noiseFraction = fraction;
+    noiseRandom = new Random(seed);
+  }
+
+  /**
+   * Search from the state in the background until the next search or {@link #stopPondering}.
+   * Pondering on the opponent's turn grows the tree, and the next search reuses it. Pondering
+   * stops by itself at the node and memory limits, or at {@code PONDER_MEMORY} if none are set.
+   * The call returns at once: re-rooting and the search run on the background thread.
+   */
+  @Override
+  public void ponder(State state) {
+    cancelPondering();
+    if (state.isFinished()) {
+      return;
+    }
+    PonderTask task = new PonderTask(state);
+    synchronized (ponderLock) {
+      ponderTask = task;
+    }
+    pool.submitBackground(task);
+  }
+
+  /**
+   * Stop pondering and wait for the background thread to finish its work
+   */
+  @Override
+  public void stopPondering() {
+    cancelPondering();
+    pool.awaitBackground();
+  }
+
+  /**
+   * Stop threads of the search
+   */
+  @Override
+  public void shutdown() {
+    stopPondering();
+    pool.shutdown();
+  }
+
+  /**
+   * Set root node of the search, reusing the tree if it holds the state and is within the limits.
+   * The table is sized for the limits. It grows with a reused tree, which is compacted into it,
+   * and shrinks only with a new tree, so that searches and pondering with different limits don't
+   * resize it back and forth.
+   */
+  private void setRoot(State state, SearchLimits limits) {
+    long tableMemory = TranspositionTable.getMemoryBudget(limits, PONDER_MEMORY);
+    int node = findNode(state);
+    if (node != SearchTree.NONE) {
+      root = node;
+      pruneTree();
+      if (tableMemory > table.getMemoryBudget()) {
+        table = new TranspositionTable(tableMemory);  // refilled by the compaction
+        compactTree();
+      } else if (limits.isExceededBy(tree)) {
+        compactTree();
+      }
+    }
+    if (node == SearchTree.NONE || limits.isExceededBy(tree)) {
+      if (tableMemory != table.getMemoryBudget()) {
+        table = new TranspositionTable(tableMemory);
+      }
+      createTree(state);
+    }
+    if (noiseFraction > 0) {
+      makeRootNoise(tree.getState(root).getValidActions());
+    }
+  }
+
+  /**
+   * Stop pondering, without waiting for the background thread
+   */
+  @Override
+  public void cancelPondering() {
+    synchronized (ponderLock) {
+      if (ponderTask != null) {
+        ponderTask.cancelled = true;
+        ponderTask = null;
+        budget.stop();
+      }
+    }
+  }
+
+  /**
+   * Return proof of the root of the last search: {@link SearchTree#WIN}, {@link SearchTree#LOSS}
+   * or {@link SearchTree#UNKNOWN}. Must not be called during a search.
+   */
+  int getRootProof() {
+    return tree.getProof(root);
+  }
+
+  /**
+   * Return tree of the last search, for tests. Must not be called during a search.
+   */
+  SearchTree getTree() {
+    return tree;
+  }
+
+  /**
+   * Return root node of the last search in {@link #getTree}
+   */
+  int getRoot() {
+    return root;
+  }
+
+  /**
+   * Return transposition table of the tree, for tests. Must not be called during a search.
+   */
+  TranspositionTable getTable() {
+    return table;
+  }
+
+  /**
+   * Return true if the result of the root is proven, so that further search can't change it
+   */
+  private boolean isSolved() {
+    return tree.getProof(root) != SearchTree.UNKNOWN;
+  }
+
+  /**
+   * Prepare workers for a search under the limits and return the worker of the calling thread
+   */
+  private Worker startWorkers(SearchLimits limits) {
+    budget.start(limits, tree, root);
+    return workers[0];
+  }
+
+  private void stopWorkers() {
+    budget.stop();
+    pool.await();
+  }
+
+  /**
+   * Move to leaf nodes, evaluate them in one batch, and back propagate the values.
+   * Virtual loss steers each descent of the batch away from the leaves already collected.
+   * Leaves found in the evaluation cache skip the evaluator.
+   *
+   * @param count Number of simulations
+   */
+  private void simulate(Worker worker, int count) {
+    int pending = 0;
+    int evaluations = 0;
+    for (int i = 0; i < count; i++) {
+      int leaf = moveToLeaf(worker, pending);
+      State state = tree.getState(leaf);
+      if (state.isFinished()) {
+        backPropagate(worker, pending, leaf, state.getValue());
+        continue;
+      }
+      worker.leaves[pending] = leaf;
+      if (cache == null || !getCached(worker, state, pending)) {
+        System.arraycopy(state.getCanonicalBoard(), 0, worker.boards,
+            evaluations * Game.board_size, Game.board_size);
+        worker.evalSlots[evaluations++] = pending;
+      }
+      pending++;
+    }
+    if (evaluations > 0) {
+      synchronized (worker.evaluator) {  // uncontended unless the evaluator is shared
+        worker.evaluator.predict(worker.evalPi, worker.evalValues, worker.boards, evaluations);
+      }
+      for (int i = 0; i < evaluations; i++) {
+        int slot = worker.evalSlots[i];
+        System.arraycopy(worker.evalPi, i * Game.board_size, worker.pi, slot * Game.board_size,
+            Game.board_size);
+        worker.values[slot] = worker.evalValues[i];
+        if (cache != null) {
+          putCached(worker, tree.getState(worker.leaves[slot]), i);
+        }
+      }
+    }
+    for (int i = 0; i < pending; i++) {
+      if (worker.expand[i]) {
+        expandNode(worker.leaves[i], worker.pi, i * Game.board_size);
+      }
+      backPropagate(worker, i, worker.leaves[i], worker.values[i]);
+    }
+  }
+
+  /**
+   * Look up the leaf in the evaluation cache. Entries are shared by symmetric boards, so Pi is
+   * kept in orientation of the canonical representative and mapped to the leaf orientation.
+   *
+   * @param slot Batch slot to copy the result to
+   * @return true if the leaf is cached
+   */
+  private boolean getCached(Worker worker, State state, int slot) {
+    if (!cache.get(state.getSymmetricCanonicalKey(), worker.canonicalPi, 0, worker.values,
+        slot)) {
+      return false;
+    }
+    int offset = slot * Game.board_size;
+    for (int action = 0; action < Game.board_size; action++) {
+      worker.pi[offset + action] = worker.canonicalPi[state.toCanonicalAction(action)];
+    }
+    return true;
+  }
+
+  /**
+   * Store evaluator result of the leaf in the cache, in orientation of the canonical
+   * representative
+   *
+   * @param index Index of the result in the evaluator output
+   */
+  private void putCached(Worker worker, State state, int index) {
+    int offset = index * Game.board_size;
+    for (int action = 0; action < Game.board_size; action++) {
+      worker.canonicalPi[state.toCanonicalAction(action)] = worker.evalPi[offset + action];
+    }
+    cache.put(state.getSymmetricCanonicalKey(), worker.canonicalPi, 0,
+        worker.evalValues[index]);
+  }
+
+  /**
+   * Move down the tree until hit a leaf node, recording the path. Edges on the path get a
+   * virtual loss until the value is back propagated.
+   *
+   * @param slot Batch slot to record the path in
+   */
+  private int moveToLeaf(Worker worker, int slot) {
+    int[] pathNodes = worker.pathNodes[slot];
+    int[] pathEdges = worker.pathEdges[slot];
+    int pathLength = 0;
+    int node = root;
+    int bestEdge;
+    int child;
+    while (true) {
+      synchronized (tree.getLock(node)) {
+        if (tree.isLeaf(node)) {
+          worker.expand[slot] = tree.claimExpansion(node);
+          worker.pathLengths[slot] = pathLength;
+          return node;
+        }
+        bestEdge = getBestEdge(node);
+        tree.addVirtualLoss(bestEdge);
+        child = tree.getChild(bestEdge);
+        if (child == SearchTree.NONE) {
+          child = addChild(node, bestEdge);
+        }
+      }
+      pathNodes[pathLength] = node;
+      pathEdges[pathLength] = bestEdge;
+      pathLength++;
+      node = child;
+    }
+  }
+
+  /**
+   * Expand node claimed by the calling thread
+   *
+   * @param offset Index of the node Pi in the array
+   */
+  private void expandNode(int node, float[] pi, int offset) {
+    State state = tree.getState(node);
+    long validActions = state.getValidActions();
+    int count = Long.bitCount(validActions);
+    int first = tree.addEdges(count);
+    int edge = first;
+    int action;
+    for (long actions = validActions; actions != 0; actions &= actions - 1, edge++) {
+      action = Long.numberOfTrailingZeros(actions);
+      tree.setEdge(edge, action, SearchTree.NONE, pi[offset + action]);
+    }
+    synchronized (tree.getLock(node)) {
+      tree.setEdges(node, first, count);
+    }
+  }
+
+  /**
+   * Add child node of the edge, or link the edge to the node of the same position if the tree
+   * has one. Must be called holding the parent node lock.
+   */
+  private int addChild(int node, int edge) {
+    State newState = tree.getState(node).getNextState(tree.getAction(edge));
+    long key = newState.getSymmetricKey();
+    int newNode;
+    synchronized (table.getLock(key)) {  // one node per position, however many parents
+      newNode = table.get(key);
+      if (newNode != SearchTree.NONE) {
+        if (verifyKeys) {
+          Game.verifyKey(tree.getState(newNode), newState);
+        }
+      } else {
+        newNode = tree.addNode(newState);
+        if (newState.isFinished() && newState.getValue() == -1) {
+          tree.setProof(newNode, SearchTree.LOSS);
+        }
+        table.put(key, newNode, newState.getMoveCount());
+      }
+    }
+    tree.setChild(edge, newNode);
+    return newNode;
+  }
+
+  /**
+   * Back propagate the value up the tree, along with the proven result of the leaf while the
+   * nodes on the path become proven
+   *
+   * @param slot Batch slot holding the path
+   */
+  private void backPropagate(Worker worker, int slot, int leaf, float value) {
+    int[] pathNodes = worker.pathNodes[slot];
+    int[] pathEdges = worker.pathEdges[slot];
+    int player = tree.getState(leaf).getPlayer();
+    boolean proving = tree.getProof(leaf) != SearchTree.UNKNOWN;
+    int node;
+    for (int i = worker.pathLengths[slot] - 1; i >= 0; i--) {
+      node = pathNodes[i];
+      int edgePlayer = tree.getState(node).getPlayer();
+      synchronized (tree.getLock(node)) {
+        tree.update(pathEdges[i], edgePlayer == player ? value : -value);
+        if (proving) {
+          proving = tree.prove(node, pathEdges[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Draw new root noise. Flat Dirichlet sample is a normalized vector of exponential variables.
+   */
+  private void makeRootNoise(long validActions) {
+    float sum = 0;
+    for (int i = 0; i < rootNoise.length; i++) {
+      if ((validActions & Game.squareMask(i)) != 0) {
+        rootNoise[i] = (float) -Math.log(1 - noiseRandom.nextDouble());
+        sum += rootNoise[i];
+      } else {
+        rootNoise[i] = 0;
+      }
+    }
+    for (int i = 0; i < rootNoise.length; i++) {
+      rootNoise[i] /= sum;
+    }
+  }
+
+  /**
+   * Pick edge with highest upper confidence bound
+   */
+  private int getBestEdge(int node) {
+    int first = tree.getFirstEdge(node);
+    int last = first + tree.getEdgeCount(node);
+    int nodeVisits = 0;
+    for (int edge = first; edge < last; edge++) {
+      nodeVisits += tree.getVisits(edge);
+    }
+    double sqrtVisits = Math.sqrt(nodeVisits);
+    boolean noisy = node == root && noiseFraction > 0;
+    double max_u = -Double.MAX_VALUE;
+    double u;
+    float prior;
+    int best_edge = SearchTree.NONE;
+    int childProof;
+    for (int edge = first; edge < last; edge++) {
+      childProof = tree.getChildProof(edge);
+      if (childProof == SearchTree.LOSS) {  // winning move
+        return edge;
+      }
+      if (childProof == SearchTree.WIN) {  // losing move
+        continue;
+      }
+      prior = tree.getPrior(edge);
+      if (noisy) {
+        prior = (1 - noiseFraction) * prior + noiseFraction * rootNoise[tree.getAction(edge)];
+      }
+      u = tree.getQ(edge) + C_PUCT * prior * sqrtVisits / (1 + tree.getVisits(edge));
+      if (u > max_u) {
+        max_u = u;
+        best_edge = edge;
+      }
+    }
+    return best_edge != SearchTree.NONE ? best_edge : first;  // all moves lose
+  }
+
+  /**
+   * Find node of the state in the tree. Look it up in the table first, and fall back to the
+   * nodes one or two moves below the root in case the entry was replaced. The node may hold a
+   * symmetric image of the state.
+   */
+  private int findNode(State state) {
+    int node = table.get(state.getSymmetricKey());
+    if (node == SearchTree.NONE && root != SearchTree.NONE) {
+      node = findDescendant(state.getSymmetricKey());
+    }
+    if (node != SearchTree.NONE && verifyKeys) {
+      Game.verifyKey(tree.getState(node), state);
+    }
+    return node;
+  }
+
+  private int findDescendant(long key) {
+    int first = tree.getFirstEdge(root);
+    for (int edge = first; edge < first + tree.getEdgeCount(root); edge++) {
+      int child = tree.getChild(edge);
+      if (child == SearchTree.NONE) {
+        continue;
+      }
+      if (tree.getState(child).getSymmetricKey() == key) {
+        return child;
+      }
+      int childFirst = tree.getFirstEdge(child);
+      for (int childEdge = childFirst; childEdge < childFirst + tree.getEdgeCount(child);
+           childEdge++) {
+        int grandchild = tree.getChild(childEdge);
+        if (grandchild != SearchTree.NONE
+            && tree.getState(grandchild).getSymmetricKey() == key) {
+          return grandchild;
+        }
+      }
+    }
+    return SearchTree.NONE;
+  }
+
+  /**
+   * Create a new tree
+   */
+  private void createTree(State state) {
+    table.clear();
+    tree.reset();
+    root = tree.addNode(state);
+    table.put(state.getSymmetricKey(), root, state.getMoveCount());
+    compactionNodes = COMPACTION_NODES;
+  }
+
+  /**
+   * Keep only subtree of the node. The rest is not copied or walked: table entries left behind
+   * age out with the generation and get replaced by new nodes, and unreachable nodes stay in the
+   * tree until {@link #compactTree}.
+   */
+  private void pruneTree() {
+    table.nextGeneration();
+    State state = tree.getState(root);
+    table.put(state.getSymmetricKey(), root, state.getMoveCount());
+  }
+
+  /**
+   * Copy subtree of the root into a new tree, reclaiming nodes unreachable from the root, and
+   * refill the table with the copied nodes. The tree is compacted on the background thread when it
+   * has doubled since the last compaction, so the cost is amortized over the nodes added
+   * meanwhile and stays off the move. A tree over the search limits is compacted at once.
+   */
+  private void compactTree() {
+    tree = tree.copySubtree(root);
+    root = 0;
+    table.clear();
+    for (int node = 0; node < tree.getNodeCount(); node++) {
+      State state = tree.getState(node);
+      table.put(state.getSymmetricKey(), node, state.getMoveCount());
+    }
+    compactionNodes = Math.max(2 * tree.getNodeCount(), COMPACTION_NODES);
+  }
+
+  /**
+   * Background search on the opponent's turn
+   */
+  private final class PonderTask implements Runnable {
+
+    final State state;
+    boolean cancelled;  // guarded by ponderLock
+
+    PonderTask(State state) {
+      this.state = state;
+    }
+
+    @Override
+    public void run() {
+      SearchLimits ponderLimits = limits.getPonderLimits(PONDER_MEMORY);
+      setRoot(state, ponderLimits);
+      if (tree.getNodeCount() >= compactionNodes) {
+        compactTree();
+      }
+      Worker worker;
+      synchronized (ponderLock) {
+        if (cancelled) {
+          return;
+        }
+        worker = startWorkers(ponderLimits);
+      }
+      pool.start(workers);
+      worker.run();
+      stopWorkers();
+    }
+  }
+
+  /**
+   * Search thread context
+   */
+  private final class Worker implements Runnable {
+
+    // Paths, leaves and results of each batch slot
+    final int[][] pathNodes;
+    final int[][] pathEdges;
+    final int[] pathLengths;
+    final int[] leaves;
+    final boolean[] expand;  // leaf is claimed for expansion
+    final float[] pi;
+    final float[] values;
+
+    // Evaluator input and output, for the slots missing from the cache
+    final int[] evalSlots;
+    final float[] boards;
+    final float[] evalPi;
+    final float[] evalValues;
+    final float[] canonicalPi = new float[Game.board_size];
+    final Evaluator evaluator;
+
+    Worker(int batchSize, Evaluator evaluator) {
+      this.evaluator = evaluator;
+      pathNodes = new int[batchSize][Game.board_size + 1];
+      pathEdges = new int[batchSize][Game.board_size + 1];
+      pathLengths = new int[batchSize];
+      leaves = new int[batchSize];
+      expand = new boolean[batchSize];
+      pi = new float[batchSize * Game.board_size];
+      values = new float[batchSize];
+      evalSlots = new int[batchSize];
+      boards = new float[batchSize * Game.board_size];
+      evalPi = new float[batchSize * Game.board_size];
+      evalValues = new float[batchSize];
+    }
+
+    @Override
+    public void run() {
+      int count;
+      while (!isSolved() && (count = budget.acquire(batchSize)) > 0) {
+        simulate(this, count);
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.Position;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+/**
+ * Playouts on a reusable scratch board.
+ * <p>
+ * A playout loads the state into a scratch {@link Position} and plays it out in place: valid
+ * actions are kept in an array, an action chosen by the {@link RolloutPolicy} is swap-removed,
+ * and the new frontier squares are appended. Random numbers come from a xorshift generator.
+ * Nothing is allocated per playout.
+ * <p>
+ * The engine is not thread-safe, each search thread owns one.
+ */
+public final class RolloutEngine {
+
+  private final int[] actions = new int[Game.board_size];
+  private final int[] indices = new int[Game.board_size];  // index of each action in the array
+  private Position position;
+  private RolloutPolicy policy;
+  private long seed;
+
+  /**
+   * @param seed Seed of the random generator
+   */
+  public RolloutEngine(long seed) {
+    this(seed, RolloutPolicy.RANDOM);
+  }
+
+  /**
+   * @param seed   Seed of the random generator
+   * @param policy Move choice of the playouts
+   */
+  public RolloutEngine(long seed, RolloutPolicy policy) {
+    // Scramble the seed, xorshift needs nonzero state and close seeds to start apart
+    this.seed = mix(seed) | 1;
+    setPolicy(policy);
+  }
+
+  /**
+   * Set move choice of the following playouts
+   */
+  public void setPolicy(RolloutPolicy policy) {
+    this.policy = policy;
+    position = new Position(policy.isTrackingThreats());
+  }
+
+  /**
+   * Play moves until the game is over and return the result from the point of view of the
+   * player to move in the state
+   */
+  public int rollout(State state) {
+    Position position = this.position;
+    position.set(state);
+    int player = state.getPlayer();
+    long validActions = state.getValidActions();
+    int count = 0;
+    for (long a = validActions; a != 0; a &= a - 1) {
+      add(Long.numberOfTrailingZeros(a), count++);
+    }
+    while (!position.isFinished()) {
+      long candidates = policy.getCandidates(position);
+      int i;
+      if (candidates == validActions) {
+        i = nextInt(count);
+      } else {
+        i = indices[Game.nthAction(candidates, nextInt(Long.bitCount(candidates)))];
+      }
+      int action = actions[i];
+      add(actions[--count], i);
+      position.makeMove(action);
+      long newActions = position.getValidActions() & ~validActions;
+      validActions = position.getValidActions();
+      for (; newActions != 0; newActions &= newActions - 1) {
+        add(Long.numberOfTrailingZeros(newActions), count++);
+      }
+    }
+    return position.getPlayer() == player ? position.getValue() : -position.getValue();
+  }
+
+  /**
+   * Put action at index of the array
+   */
+  private void add(int action, int i) {
+    actions[i] = action;
+    indices[action] = i;
+  }
+
+  /**
+   * Return uniformly distributed int in [0, bound)
+   */
+  private int nextInt(int bound) {
+    long x = seed;
+    x ^= x << 13;
+    x ^= x >>> 7;
+    x ^= x << 17;
+    seed = x;
+    return (int) (((x >>> 32) * bound) >>> 32);
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
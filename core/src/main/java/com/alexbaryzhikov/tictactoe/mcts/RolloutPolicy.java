@@ -0,0 +1,37 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Position;
+
+/**
+ * Move choice of rollouts. A policy narrows down the valid actions of a position, and the
+ * rollout engine picks one of the candidates uniformly at random.
+ * <p>
+ * A policy is shared by search threads, so it must not keep state between calls.
+ */
+public interface RolloutPolicy {
+
+  /**
+   * Policy choosing among all valid actions
+   */
+  RolloutPolicy RANDOM = new RolloutPolicy() {
+    @Override
+    public long getCandidates(Position position) {
+      return position.getValidActions();
+    }
+
+    @Override
+    public boolean isTrackingThreats() {
+      return false;
+    }
+  };
+
+  /**
+   * Return nonempty mask of valid actions to choose from
+   */
+  long getCandidates(Position position);
+
+  /**
+   * Return true if the policy reads threats, so that the position must track them
+   */
+  boolean isTrackingThreats();
+}
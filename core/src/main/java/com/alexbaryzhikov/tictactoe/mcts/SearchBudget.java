@@ -0,0 +1,133 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulations left to a search under its {@link SearchLimits}. Search threads reserve
+ * simulations before running them, and the budget refuses once a limit is reached or the search
+ * is stopped. Visits the root already has from earlier searches count against the simulation
+ * limit, so a reused or pondered tree needs fewer new simulations.
+ */
+final class SearchBudget {
+
+  private static final int CHECK_INTERVAL = 64;  // simulations between early stop checks
+
+  private final AtomicInteger started = new AtomicInteger();
+  private volatile boolean stopped;
+  private SearchLimits limits;
+  private SearchTree tree;
+  private int root;
+  private int visited;  // visits of the root at the start
+  private long startTime;
+  private long deadline;
+
+  /**
+   * Start budget of a search from the root node of the tree
+   */
+  void start(SearchLimits limits, SearchTree tree, int root) {
+    this.limits = limits;
+    this.tree = tree;
+    this.root = root;
+    startTime = System.currentTimeMillis();
+    deadline = limits.getTime() > 0 ? startTime + limits.getTime() : Long.MAX_VALUE;
+    visited = 0;
+    synchronized (tree.getLock(root)) {
+      int first = tree.getFirstEdge(root);
+      for (int edge = first; edge < first + tree.getEdgeCount(root); edge++) {
+        visited += tree.getVisits(edge);
+      }
+    }
+    started.set(0);
+    stopped = false;
+  }
+
+  /**
+   * Refuse all further simulations
+   */
+  void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Reserve up to count simulations and return the number reserved, 0 if the search must stop
+   */
+  int acquire(int count) {
+    if (stopped) {
+      return 0;
+    }
+    if (System.currentTimeMillis() >= deadline || limits.isExceededBy(tree)) {
+      stopped = true;
+      return 0;
+    }
+    int i = started.getAndAdd(count);
+    int simulations = limits.getSimulations() - visited;
+    if (limits.getSimulations() > 0) {
+      if (i >= simulations) {
+        return 0;
+      }
+      count = Math.min(count, simulations - i);
+    }
+    if (limits.isEarlyStop() && i / CHECK_INTERVAL != (i + count) / CHECK_INTERVAL
+        && isDecided(i)) {
+      stopped = true;
+      return 0;
+    }
+    return count;
+  }
+
+  /**
+   * Return search progress in percent
+   */
+  int getProgress() {
+    double progress = 0;
+    if (limits.getSimulations() > 0) {
+      progress = (visited + started.get()) / (double) limits.getSimulations();
+    }
+    if (limits.getTime() > 0) {
+      long elapsed = System.currentTimeMillis() - startTime;
+      progress = Math.max(progress, elapsed / (double) limits.getTime());
+    }
+    return (int) (Math.min(progress, 1) * 100 + 0.5);
+  }
+
+  /**
+   * Return true if visit lead of the best root action is larger than the simulations left
+   *
+   * @param started Number of simulations started by the search so far
+   */
+  private boolean isDecided(int started) {
+    long remaining = Long.MAX_VALUE;
+    if (limits.getSimulations() > 0) {
+      remaining = limits.getSimulations() - visited - started;
+    }
+    if (limits.getTime() > 0) {
+      long now = System.currentTimeMillis();
+      long elapsed = now - startTime;
+      if (elapsed == 0) {  // rate is unknown yet
+        return false;
+      }
+      remaining = Math.min(remaining, started * (deadline - now) / elapsed);
+    }
+    if (remaining == Long.MAX_VALUE) {
+      return false;
+    }
+    int best = 0;
+    int second = 0;
+    synchronized (tree.getLock(root)) {
+      int first = tree.getFirstEdge(root);
+      for (int edge = first; edge < first + tree.getEdgeCount(root); edge++) {
+        if (tree.getChildProof(edge) == SearchTree.WIN) {
+          continue;  // move is proven to lose, its visits don't count
+        }
+        int visits = tree.getVisits(edge);
+        if (visits > best) {
+          second = best;
+          best = visits;
+        } else if (visits > second) {
+          second = visits;
+        }
+      }
+    }
+    return best - second > remaining;
+  }
+}
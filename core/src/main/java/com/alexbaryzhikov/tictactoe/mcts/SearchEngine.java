@@ -0,0 +1,47 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.State;
+
+/**
+ * Tree search producing visit counts over actions
+ */
+public interface SearchEngine {
+
+  /**
+   * Search from the game state and return a vector of visit counts over all actions.
+   * Return null or an empty vector if the search was cancelled.
+   */
+  int[] getDistribution(State state);
+
+  /**
+   * Search from the state in the background, until the next search or {@link #stopPondering}.
+   * Called on the opponent's turn with the state after the engine's move.
+   */
+  void ponder(State state);
+
+  /**
+   * Stop background search, if any, and wait for the background work to finish
+   */
+  void stopPondering();
+
+  /**
+   * Stop background search, if any, and return at once. The next search waits for the
+   * background work, so this is the call for threads that must not block, e.g. the UI thread.
+   */
+  void cancelPondering();
+
+  /**
+   * Set limits of the following searches
+   */
+  void setLimits(SearchLimits limits);
+
+  /**
+   * Set monitor of the following searches
+   */
+  void setMonitor(SearchMonitor monitor);
+
+  /**
+   * Stop threads owned by the engine
+   */
+  void shutdown();
+}
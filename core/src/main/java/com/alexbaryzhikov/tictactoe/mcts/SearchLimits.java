@@ -0,0 +1,153 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+/**
+ * Limits of a search. The search stops at whichever limit it reaches first:
+ * <ul>
+ * <li>time - wall-clock time in milliseconds,
+ * <li>simulations - number of simulations, counting visits the root has from earlier searches,
+ * <li>nodes - number of nodes in the search tree,
+ * <li>memory - estimated size of the search tree in bytes.
+ * </ul>
+ * 0 means no limit, at least one limit must be set. Node and memory limits count the nodes kept
+ * from earlier searches. An engine compacts a kept tree that is over them, and starts a new tree
+ * if it is still over them. The transposition table of an engine is sized from the node and
+ * memory limits too, or from the number of simulations.
+ * <p>
+ * With early stopping the search also stops once the most visited root action can't be overtaken
+ * in the rest of the simulations. Under a time limit the rest is estimated from the simulation
+ * rate so far.
+ * <p>
+ * Limits are immutable and may be shared by engines.
+ */
+public final class SearchLimits {
+
+  private final long time;
+  private final int simulations;
+  private final int nodes;
+  private final long memory;
+  private final boolean earlyStop;
+
+  private SearchLimits(Builder builder) {
+    time = builder.time;
+    simulations = builder.simulations;
+    nodes = builder.nodes;
+    memory = builder.memory;
+    earlyStop = builder.earlyStop;
+  }
+
+  /**
+   * Limit search by wall-clock time in milliseconds
+   */
+  public static SearchLimits ofTime(long time) {
+    return new Builder().setTime(time).build();
+  }
+
+  /**
+   * Limit search by number of simulations
+   */
+  public static SearchLimits ofSimulations(int simulations) {
+    return new Builder().setSimulations(simulations).build();
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public int getSimulations() {
+    return simulations;
+  }
+
+  public int getNodes() {
+    return nodes;
+  }
+
+  public long getMemory() {
+    return memory;
+  }
+
+  public boolean isEarlyStop() {
+    return earlyStop;
+  }
+
+  /**
+   * Return true if the tree is over the node or memory limit
+   */
+  boolean isExceededBy(SearchTree tree) {
+    return nodes > 0 && tree.getNodeCount() >= nodes
+        || memory > 0 && tree.getMemoryUsage() >= memory;
+  }
+
+  /**
+   * Return limits of a search on the opponent's turn: the node and memory limits, or the memory
+   * if neither is set
+   */
+  SearchLimits getPonderLimits(long memory) {
+    Builder builder = new Builder().setNodes(nodes).setMemory(this.memory);
+    if (nodes == 0 && this.memory == 0) {
+      builder.setMemory(memory);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public String toString() {
+    return "SearchLimits{time=" + time + ", simulations=" + simulations + ", nodes=" + nodes
+        + ", memory=" + memory + ", earlyStop=" + earlyStop + "}";
+  }
+
+  public static final class Builder {
+
+    private long time;
+    private int simulations;
+    private int nodes;
+    private long memory;
+    private boolean earlyStop;
+
+    public Builder setTime(long time) {
+      if (time < 0) {
+        throw new IllegalArgumentException("Invalid time limit: " + time);
+      }
+      this.time = time;
+      return this;
+    }
+
+    public Builder setSimulations(int simulations) {
+      if (simulations < 0) {
+        throw new IllegalArgumentException("Invalid number of simulations: " + simulations);
+      }
+      this.simulations = simulations;
+      return this;
+    }
+
+    public Builder setNodes(int nodes) {
+      if (nodes < 0) {
+        throw new IllegalArgumentException("Invalid number of nodes: " + nodes);
+      }
+      this.nodes = nodes;
+      return this;
+    }
+
+    public Builder setMemory(long memory) {
+      if (memory < 0) {
+        throw new IllegalArgumentException("Invalid memory limit: " + memory);
+      }
+      this.memory = memory;
+      return this;
+    }
+
+    /**
+     * Stop the search once the most visited root action can't be overtaken
+     */
+    public Builder setEarlyStop(boolean earlyStop) {
+      this.earlyStop = earlyStop;
+      return this;
+    }
+
+    public SearchLimits build() {
+      if (time == 0 && simulations == 0 && nodes == 0 && memory == 0) {
+        throw new IllegalArgumentException("Search is not limited");
+      }
+      return new SearchLimits(this);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+/**
+ * Destination of search debug output
+ */
+public interface SearchLogger {
+
+  /**
+   * Logger that discards messages
+   */
+  SearchLogger NONE = new SearchLogger() {
+    @Override
+    public void log(String tag, String message) {
+    }
+  };
+
+  void log(String tag, String message);
+}
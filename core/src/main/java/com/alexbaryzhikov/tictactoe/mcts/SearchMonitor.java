@@ -0,0 +1,33 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+/**
+ * Observer of a running search. Called from search threads.
+ */
+public interface SearchMonitor {
+
+  /**
+   * Monitor that never cancels and ignores progress
+   */
+  SearchMonitor NONE = new SearchMonitor() {
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public void onProgressUpdate(int progress) {
+    }
+  };
+
+  /**
+   * Return true if the search should be aborted
+   */
+  boolean isCancelled();
+
+  /**
+   * Report search progress
+   *
+   * @param progress Percent of the search budget used
+   */
+  void onProgressUpdate(int progress);
+}
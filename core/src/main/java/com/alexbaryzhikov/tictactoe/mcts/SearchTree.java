@@ -0,0 +1,399 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import java.util.Arrays;
+
+/**
+ * Arena storage of MCTS nodes and edges.
+ * <p>
+ * Nodes and edges are plain int ids into flat primitive arrays (structure of arrays) instead
+ * of separate heap objects. The arrays are split into fixed size pages, so the tree grows by
+ * adding pages without copying, and is reset in bulk by rewinding the counters. Edges of a node
+ * are allocated as one contiguous run inside a page, so selection scans adjacent memory. Child
+ * nodes are added lazily, when an edge is first selected. Nodes left unreachable by tree reuse
+ * are reclaimed by copying the live subtree into a new tree.
+ * <p>
+ * Nodes also keep proven game results (MCTS-Solver): a node is a proven win if one of its
+ * children is a proven loss, and a proven loss if all of its children are proven wins.
+ * <p>
+ * The tree can be shared by search threads. Allocation of ids and pages is synchronized on the
+ * tree, which is a counter bump in the common case. Edges and statistics of a node are guarded by
+ * the node lock from {@link #getLock}, which is one of a fixed set of striped locks. Pages are
+ * never moved, so an id published under a lock stays valid.
+ */
+final class SearchTree {
+
+  static final int NONE = -1;
+  static final double VIRTUAL_LOSS = 1;
+
+  // Proven results, from the point of view of the player to move in the node
+  static final int UNKNOWN = 0;
+  static final int WIN = 1;
+  static final int LOSS = -1;
+
+  private static final int PAGE_SHIFT = 12;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+  private static final int LOCK_STRIPES = 1 << 10;
+  private static final int EXPANDING = -2;
+  // Estimated sizes with compressed references, a node counts its state object too
+  private static final int NODE_BYTES = 13 + 88;
+  private static final int EDGE_BYTES = 17;
+  private static final int PRIOR_BYTES = 4;
+
+  private final boolean withPriors;
+  private final Object[] locks = new Object[LOCK_STRIPES];
+
+  // Nodes
+  private State[][] states = new State[0][];
+  private int[][] firstEdges = new int[0][];
+  private int[][] edgeCounts = new int[0][];
+  private byte[][] proofs = new byte[0][];
+  private int nodeCount;
+
+  // Edges
+  private byte[][] actions = new byte[0][];
+  private int[][] children = new int[0][];
+  private int[][] visits = new int[0][];
+  private double[][] valueSums = new double[0][];
+  private float[][] priors = new float[0][];
+  private int edgeCount;
+
+  /**
+   * @param withPriors Allocate storage for edge priors
+   */
+  SearchTree(boolean withPriors) {
+    this.withPriors = withPriors;
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  /**
+   * Return lock guarding edges and statistics of the node
+   */
+  Object getLock(int node) {
+    return locks[node & (LOCK_STRIPES - 1)];
+  }
+
+  /* NODES -------------------------------------------------------------------------------------- */
+
+  /**
+   * Add a leaf node and return its id
+   */
+  int addNode(State state) {
+    int node = allocateNode();
+    int page = node >>> PAGE_SHIFT;
+    int i = node & PAGE_MASK;
+    states[page][i] = state;
+    firstEdges[page][i] = NONE;
+    edgeCounts[page][i] = 0;
+    proofs[page][i] = UNKNOWN;
+    return node;
+  }
+
+  /**
+   * Reserve id of a new node. Only the counter and the page list are guarded by the tree lock,
+   * the node is filled outside it.
+   */
+  private synchronized int allocateNode() {
+    int node = nodeCount++;
+    if (node >>> PAGE_SHIFT == states.length) {
+      addNodePage();
+    }
+    return node;
+  }
+
+  State getState(int node) {
+    return states[node >>> PAGE_SHIFT][node & PAGE_MASK];
+  }
+
+  /**
+   * Return true if node has no edges yet
+   */
+  boolean isLeaf(int node) {
+    return edgeCounts[node >>> PAGE_SHIFT][node & PAGE_MASK] == 0;
+  }
+
+  /**
+   * Mark leaf node as being expanded. Return false if another thread has already claimed it.
+   * Must be called holding the node lock.
+   */
+  boolean claimExpansion(int node) {
+    int page = node >>> PAGE_SHIFT;
+    int i = node & PAGE_MASK;
+    if (firstEdges[page][i] != NONE) {
+      return false;
+    }
+    firstEdges[page][i] = EXPANDING;
+    return true;
+  }
+
+  int getFirstEdge(int node) {
+    return firstEdges[node >>> PAGE_SHIFT][node & PAGE_MASK];
+  }
+
+  int getEdgeCount(int node) {
+    return edgeCounts[node >>> PAGE_SHIFT][node & PAGE_MASK];
+  }
+
+  /**
+   * Return proven result of the node
+   */
+  int getProof(int node) {
+    return proofs[node >>> PAGE_SHIFT][node & PAGE_MASK];
+  }
+
+  /**
+   * Set proven result of the node. Results are written under the node lock, and read by
+   * selection without it: a result that is seen late only costs a few more simulations.
+   */
+  void setProof(int node, int proof) {
+    proofs[node >>> PAGE_SHIFT][node & PAGE_MASK] = (byte) proof;
+  }
+
+  /**
+   * Try to prove the node from the result of the child of its edge. Return true if the node
+   * has become proven. Must be called holding the node lock.
+   */
+  boolean prove(int node, int edge) {
+    if (getProof(node) != UNKNOWN) {
+      return false;
+    }
+    int childProof = getProof(getChild(edge));
+    if (childProof == LOSS) {
+      setProof(node, WIN);
+      return true;
+    }
+    if (childProof == UNKNOWN) {
+      return false;
+    }
+    int first = getFirstEdge(node);
+    for (int e = first; e < first + getEdgeCount(node); e++) {
+      int child = getChild(e);
+      if (child == NONE || getProof(child) != WIN) {
+        return false;
+      }
+    }
+    setProof(node, LOSS);
+    return true;
+  }
+
+  /**
+   * Return proven result of the edge child, unknown if the child is not added yet
+   */
+  int getChildProof(int edge) {
+    int child = getChild(edge);
+    return child == NONE ? UNKNOWN : getProof(child);
+  }
+
+  int getNodeCount() {
+    return nodeCount;
+  }
+
+  /* EDGES -------------------------------------------------------------------------------------- */
+
+  /**
+   * Allocate a contiguous run of edges and return id of the first one. Edges must be filled with
+   * {@link #setEdge} and attached to the node with {@link #setEdges} afterwards.
+   */
+  synchronized int addEdges(int count) {
+    if (count > PAGE_SIZE) {
+      throw new IllegalArgumentException("Too many edges: " + count);
+    }
+    // Don't let the run straddle a page boundary
+    int first = edgeCount;
+    if ((first & PAGE_MASK) + count > PAGE_SIZE) {
+      first = (first & ~PAGE_MASK) + PAGE_SIZE;
+    }
+    edgeCount = first + count;
+    int page = first >>> PAGE_SHIFT;
+    if (page == visits.length) {
+      addEdgePage();
+    }
+    return first;
+  }
+
+  /**
+   * Attach filled run of edges to the node. Must be called holding the node lock.
+   */
+  void setEdges(int node, int first, int count) {
+    int i = node & PAGE_MASK;
+    firstEdges[node >>> PAGE_SHIFT][i] = first;
+    edgeCounts[node >>> PAGE_SHIFT][i] = count;
+  }
+
+  /**
+   * Initialize edge
+   */
+  void setEdge(int edge, int action, int child, float prior) {
+    int page = edge >>> PAGE_SHIFT;
+    int i = edge & PAGE_MASK;
+    actions[page][i] = (byte) action;
+    children[page][i] = child;
+    visits[page][i] = 0;
+    valueSums[page][i] = 0;
+    if (withPriors) {
+      priors[page][i] = prior;
+    }
+  }
+
+  /**
+   * Attach child node to the edge. Must be called holding the parent node lock.
+   */
+  void setChild(int edge, int child) {
+    children[edge >>> PAGE_SHIFT][edge & PAGE_MASK] = child;
+  }
+
+  int getAction(int edge) {
+    return actions[edge >>> PAGE_SHIFT][edge & PAGE_MASK];
+  }
+
+  int getChild(int edge) {
+    return children[edge >>> PAGE_SHIFT][edge & PAGE_MASK];
+  }
+
+  int getVisits(int edge) {
+    return visits[edge >>> PAGE_SHIFT][edge & PAGE_MASK];
+  }
+
+  double getValueSum(int edge) {
+    return valueSums[edge >>> PAGE_SHIFT][edge & PAGE_MASK];
+  }
+
+  /**
+   * Return mean value of the edge
+   */
+  double getQ(int edge) {
+    int page = edge >>> PAGE_SHIFT;
+    int i = edge & PAGE_MASK;
+    int n = visits[page][i];
+    return n == 0 ? 0 : valueSums[page][i] / n;
+  }
+
+  float getPrior(int edge) {
+    return priors[edge >>> PAGE_SHIFT][edge & PAGE_MASK];
+  }
+
+  /**
+   * Start a visit of the edge: count it and add a loss, so that concurrent searches spread over
+   * other edges until the value is known. Must be called holding the parent node lock.
+   */
+  void addVirtualLoss(int edge) {
+    int page = edge >>> PAGE_SHIFT;
+    int i = edge & PAGE_MASK;
+    visits[page][i]++;
+    valueSums[page][i] -= VIRTUAL_LOSS;
+  }
+
+  /**
+   * Complete a visit of the edge, replacing its virtual loss with the value.
+   * Must be called holding the parent node lock.
+   */
+  void update(int edge, double value) {
+    valueSums[edge >>> PAGE_SHIFT][edge & PAGE_MASK] += value + VIRTUAL_LOSS;
+  }
+
+  int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /* MEMORY ------------------------------------------------------------------------------------- */
+
+  /**
+   * Return estimated size of the nodes and edges in bytes
+   */
+  long getMemoryUsage() {
+    int edgeBytes = withPriors ? EDGE_BYTES + PRIOR_BYTES : EDGE_BYTES;
+    return (long) nodeCount * NODE_BYTES + (long) edgeCount * edgeBytes;
+  }
+
+  /**
+   * Return a copy of the subtree of the node, with the node as node 0. Nodes unreachable from it
+   * are left behind. The copy is breadth-first (Cheney's algorithm): copied nodes serve as the
+   * queue, so there is no recursion, and a node shared by several parents is copied once.
+   * Must not be called during a search.
+   */
+  SearchTree copySubtree(int root) {
+    SearchTree copy = new SearchTree(withPriors);
+    int[] forward = new int[nodeCount];  // id of the copy of each node
+    int[] origins = new int[nodeCount];  // id of the original of each copy
+    Arrays.fill(forward, NONE);
+    forward[root] = copy.addNode(getState(root));
+    origins[forward[root]] = root;
+    for (int node = 0; node < copy.nodeCount; node++) {
+      int origin = origins[node];
+      copy.setProof(node, getProof(origin));
+      int count = getEdgeCount(origin);
+      if (count == 0) {
+        continue;
+      }
+      int first = copy.addEdges(count);
+      int originFirst = getFirstEdge(origin);
+      for (int i = 0; i < count; i++) {
+        int edge = originFirst + i;
+        int child = getChild(edge);
+        if (child != NONE) {
+          if (forward[child] == NONE) {
+            forward[child] = copy.addNode(getState(child));
+            origins[forward[child]] = child;
+          }
+          child = forward[child];
+        }
+        int copyEdge = first + i;
+        int page = copyEdge >>> PAGE_SHIFT;
+        int j = copyEdge & PAGE_MASK;
+        copy.actions[page][j] = (byte) getAction(edge);
+        copy.children[page][j] = child;
+        copy.visits[page][j] = getVisits(edge);
+        copy.valueSums[page][j] = getValueSum(edge);
+        if (withPriors) {
+          copy.priors[page][j] = getPrior(edge);
+        }
+      }
+      copy.setEdges(node, first, count);
+    }
+    return copy;
+  }
+
+  /**
+   * Remove all nodes and edges. Pages are kept for reuse.
+   */
+  synchronized void reset() {
+    int pages = (nodeCount + PAGE_MASK) >>> PAGE_SHIFT;
+    for (int page = 0; page < pages; page++) {
+      Arrays.fill(states[page], null);  // release states
+    }
+    nodeCount = 0;
+    edgeCount = 0;
+  }
+
+  private void addNodePage() {
+    int pages = states.length + 1;
+    states = Arrays.copyOf(states, pages);
+    firstEdges = Arrays.copyOf(firstEdges, pages);
+    edgeCounts = Arrays.copyOf(edgeCounts, pages);
+    proofs = Arrays.copyOf(proofs, pages);
+    states[pages - 1] = new State[PAGE_SIZE];
+    firstEdges[pages - 1] = new int[PAGE_SIZE];
+    edgeCounts[pages - 1] = new int[PAGE_SIZE];
+    proofs[pages - 1] = new byte[PAGE_SIZE];
+  }
+
+  private void addEdgePage() {
+    int pages = visits.length + 1;
+    actions = Arrays.copyOf(actions, pages);
+    children = Arrays.copyOf(children, pages);
+    visits = Arrays.copyOf(visits, pages);
+    valueSums = Arrays.copyOf(valueSums, pages);
+    actions[pages - 1] = new byte[PAGE_SIZE];
+    children[pages - 1] = new int[PAGE_SIZE];
+    visits[pages - 1] = new int[PAGE_SIZE];
+    valueSums[pages - 1] = new double[PAGE_SIZE];
+    if (withPriors) {
+      priors = Arrays.copyOf(priors, pages);
+      priors[pages - 1] = new float[PAGE_SIZE];
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Position;
+
+/**
+ * Rollout policy that doesn't miss immediate tactics: it completes its own line if it can,
+ * otherwise blocks a line the opponent would complete, and otherwise plays randomly
+ */
+public final class TacticalPolicy implements RolloutPolicy {
+
+  @Override
+  public long getCandidates(Position position) {
+    int player = position.getPlayer();
+    long validActions = position.getValidActions();
+    long wins = position.getThreats(player) & validActions;
+    if (wins != 0) {
+      return wins;
+    }
+    long blocks = position.getThreats(-player) & validActions;
+    if (blocks != 0) {
+      return blocks;
+    }
+    return validActions;
+  }
+
+  @Override
+  public boolean isTrackingThreats() {
+    return true;
+  }
+}
@@ -0,0 +1,188 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transposition table mapping 64-bit state keys to node ids.
+ * <p>
+ * Open addressing over a fixed number of slots, sized from a memory budget. A key is probed
+ * linearly within its bucket of {@code PROBE_LIMIT} aligned slots. Entries are never removed one
+ * by one, so a probe stops at the first empty slot. When the bucket is full, an entry from an
+ * older generation is replaced first, then the deepest one, since nodes closer to the root gather
+ * more visits.
+ * <p>
+ * Tree reuse bumps the generation instead of copying the retained subtree. Entries touched in
+ * the current generation are kept, the rest become replacement candidates.
+ * <p>
+ * The table can be shared by search threads. Buckets are guarded by striped locks, so threads
+ * working on different keys rarely contend. {@link #getLock} exposes the lock of a key, for
+ * callers that must look up and insert a key atomically.
+ */
+final class TranspositionTable {
+
+  /** Key + node id + generation + depth */
+  private static final int ENTRY_BYTES = 8 + 4 + 1 + 1;
+  private static final int PROBE_LIMIT = 8;  // bucket size, a power of 2
+  private static final int LOCK_STRIPES = 1 << 8;
+  private static final int SLOTS_PER_NODE = 2;
+  private static final int TREE_SHARE = 8;  // table memory per tree memory, about 2 slots a node
+  private static final int EMPTY = 0;
+
+  private final long[] keys;
+  private final int[] values;
+  private final byte[] generations;
+  private final byte[] depths;
+  private final int mask;
+  private final long memoryBudget;
+  private final Object[] locks = new Object[LOCK_STRIPES];
+
+  private volatile int generation = 1;
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * Create table that fits in memory budget
+   *
+   * @param memoryBudget Table size limit in bytes
+   */
+  TranspositionTable(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+    long slots = Math.max(memoryBudget / ENTRY_BYTES, PROBE_LIMIT);
+    int capacity = (int) Long.highestOneBit(Math.min(slots, 1 << 30));
+    keys = new long[capacity];
+    values = new int[capacity];
+    generations = new byte[capacity];
+    depths = new byte[capacity];
+    mask = capacity - 1;
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  /**
+   * Return memory budget of a table for the tree of a search under the limits. The table gets two
+   * slots per node the tree may hold, estimated from the node and memory limits, whichever is
+   * smaller. Without them the tree is bounded by the default memory, and the table takes its
+   * share of it, or less if the number of simulations is smaller.
+   */
+  static long getMemoryBudget(SearchLimits limits, long defaultTreeMemory) {
+    long budget = Long.MAX_VALUE;
+    if (limits.getNodes() > 0) {
+      budget = Math.min(budget, (long) limits.getNodes() * SLOTS_PER_NODE * ENTRY_BYTES);
+    }
+    if (limits.getMemory() > 0) {
+      budget = Math.min(budget, limits.getMemory() / TREE_SHARE);
+    }
+    if (budget != Long.MAX_VALUE) {
+      return budget;
+    }
+    budget = defaultTreeMemory / TREE_SHARE;
+    if (limits.getSimulations() > 0) {
+      budget = Math.min(budget, (limits.getSimulations() + 1L) * SLOTS_PER_NODE * ENTRY_BYTES);
+    }
+    return budget;
+  }
+
+  /**
+   * Return memory budget the table was created with
+   */
+  long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * Return lock guarding the bucket of the key
+   */
+  Object getLock(long key) {
+    return locks[(index(key) / PROBE_LIMIT) & (LOCK_STRIPES - 1)];
+  }
+
+  /**
+   * Return node id stored under the key, or {@link SearchTree#NONE} if there is none.
+   * Found entry is moved to the current generation.
+   */
+  int get(long key) {
+    synchronized (getLock(key)) {
+      int i = index(key);
+      for (int end = i + PROBE_LIMIT; i < end; i++) {
+        if (generations[i] == EMPTY) {
+          return SearchTree.NONE;
+        }
+        if (keys[i] == key) {
+          generations[i] = (byte) generation;
+          return values[i];
+        }
+      }
+      return SearchTree.NONE;
+    }
+  }
+
+  /**
+   * Store node id under the key
+   *
+   * @param depth Distance of the node from the game start, used by replacement policy
+   */
+  void put(long key, int value, int depth) {
+    synchronized (getLock(key)) {
+      int i = index(key);
+      int victim = -1;
+      int victimScore = -1;
+      for (int end = i + PROBE_LIMIT; i < end; i++) {
+        if (generations[i] == EMPTY) {
+          size.incrementAndGet();
+          store(i, key, value, depth);
+          return;
+        }
+        if (keys[i] == key) {
+          store(i, key, value, depth);
+          return;
+        }
+        int score = (generations[i] == (byte) generation ? 0 : 256) + depths[i];
+        if (score > victimScore) {
+          victimScore = score;
+          victim = i;
+        }
+      }
+      store(victim, key, value, depth);
+    }
+  }
+
+  /**
+   * Start a new generation. Entries not touched since become replaceable. Must not be called
+   * during a search.
+   */
+  void nextGeneration() {
+    generation = generation == 255 ? 1 : generation + 1;
+  }
+
+  /**
+   * Remove all entries. Must not be called during a search.
+   */
+  void clear() {
+    Arrays.fill(generations, (byte) EMPTY);
+    generation = 1;
+    size.set(0);
+  }
+
+  /**
+   * Return number of occupied slots
+   */
+  int size() {
+    return size.get();
+  }
+
+  private void store(int i, long key, int value, int depth) {
+    keys[i] = key;
+    values[i] = value;
+    generations[i] = (byte) generation;
+    depths[i] = (byte) depth;
+  }
+
+  /**
+   * Spread key bits over the table index and return the first slot of the key bucket
+   */
+  private int index(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32) & mask & -PROBE_LIMIT;
+  }
+}
@@ -0,0 +1,26 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+
+import java.util.Arrays;
+
+/**
+ * Stand-in for the neural network: uniform Pi and zero Value. Searches with it depend on the
+ * search alone, e.g. in tests and benchmarks of {@link MctsP}.
+ */
+public final class UniformEvaluator implements Evaluator {
+
+  private static final float PRIOR = 1f / Game.board_size;
+
+  @Override
+  public float predict(float[] pi, float[] canonicalBoard) {
+    Arrays.fill(pi, 0, Game.board_size, PRIOR);
+    return 0;
+  }
+
+  @Override
+  public void predict(float[] pi, float[] value, float[] boards, int batch) {
+    Arrays.fill(pi, 0, batch * Game.board_size, PRIOR);
+    Arrays.fill(value, 0, batch, 0);
+  }
+}
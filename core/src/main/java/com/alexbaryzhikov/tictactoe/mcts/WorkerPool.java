@@ -0,0 +1,139 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Helper threads of a parallel search. The calling thread is always the first worker, so a pool
+ * of {@code n} threads keeps {@code n - 1} daemon threads. Work done off the calling thread, such
+ * as pondering, is queued on one more daemon thread, created on first use.
+ * <p>
+ * Background methods may be called from any thread, the others only from the searching thread.
+ */
+final class WorkerPool {
+
+  private final int threads;
+  private final ExecutorService executor;
+  private final Future<?>[] futures;
+  private ExecutorService background;  // guarded by this
+  private final Queue<Future<?>> backgroundFutures = new ConcurrentLinkedQueue<>();
+
+  WorkerPool(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: " + threads);
+    }
+    this.threads = threads;
+    this.executor = threads > 1
+        ? Executors.newFixedThreadPool(threads - 1, newThreadFactory("MCTS worker"))
+        : null;
+    this.futures = new Future<?>[threads - 1];
+  }
+
+  int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Start tasks on helper threads. Task 0 is left for the calling thread.
+   */
+  void start(Runnable[] tasks) {
+    for (int i = 1; i < threads; i++) {
+      futures[i - 1] = executor.submit(tasks[i]);
+    }
+  }
+
+  /**
+   * Wait for helper threads to finish their tasks
+   */
+  void await() {
+    Throwable failure = null;
+    for (int i = 0; i < futures.length; i++) {
+      if (futures[i] != null) {
+        Throwable taskFailure = getUninterruptibly(futures[i]);
+        futures[i] = null;
+        failure = taskFailure != null ? taskFailure : failure;
+      }
+    }
+    if (failure != null) {
+      throw new RuntimeException("Search worker failed", failure);
+    }
+  }
+
+  /**
+   * Queue task on the background thread and return at once. Background tasks run one at a time,
+   * in order.
+   */
+  synchronized void submitBackground(Runnable task) {
+    if (background == null) {
+      background = Executors.newSingleThreadExecutor(newThreadFactory("MCTS background"));
+    }
+    backgroundFutures.add(background.submit(task));
+  }
+
+  /**
+   * Wait for the background thread to finish queued tasks, including tasks queued meanwhile.
+   * The lock is not held while waiting, so other threads can queue tasks.
+   */
+  void awaitBackground() {
+    Throwable failure = null;
+    for (Future<?> future : backgroundFutures) {  // iteration sees tasks added meanwhile
+      Throwable taskFailure = getUninterruptibly(future);
+      backgroundFutures.remove(future);
+      failure = taskFailure != null ? taskFailure : failure;
+    }
+    if (failure != null) {
+      throw new RuntimeException("Background task failed", failure);
+    }
+  }
+
+  /**
+   * Stop pool threads
+   */
+  synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    if (background != null) {
+      background.shutdownNow();
+    }
+  }
+
+  /**
+   * Wait for the task, deferring interrupts, and return its failure or null
+   */
+  private static Throwable getUninterruptibly(Future<?> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return null;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          return e.getCause();
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static ThreadFactory newThreadFactory(final String name) {
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+}
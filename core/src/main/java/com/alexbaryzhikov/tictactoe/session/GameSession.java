@@ -0,0 +1,94 @@
+package com.alexbaryzhikov.tictactoe.session;
+
+import com.alexbaryzhikov.tictactoe.agents.Agent;
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import java.util.Random;
+
+/**
+ * One game: its current state and the agent playing in it. Sessions share only the read-only
+ * tables of {@link Game}, so any number of them can run concurrently. A session itself is not
+ * thread-safe, it must be handed over between threads with proper synchronization.
+ */
+public final class GameSession {
+
+  private final Agent agent;
+  private final Random random;
+  private State state;
+
+  /**
+   * Start a game with a random first player
+   */
+  public GameSession(Agent agent) {
+    this(agent, new Random());
+  }
+
+  /**
+   * Start a game without an agent of its own, all moves are made from outside
+   *
+   * @param random Random generator choosing the first player of each game
+   */
+  public GameSession(Random random) {
+    this(null, random);
+  }
+
+  /**
+   * Start a game with a random first player
+   *
+   * @param random Random generator choosing the first player of each game
+   */
+  public GameSession(Agent agent, Random random) {
+    this.agent = agent;
+    this.random = random;
+    restart();
+  }
+
+  /**
+   * Start a new game with a random first player
+   */
+  public void restart() {
+    restart(random.nextInt(2) * 2 - 1);
+  }
+
+  /**
+   * Start a new game
+   *
+   * @param player Player to move first, 1 or -1
+   */
+  public void restart(int player) {
+    state = Game.getInitialState(player);
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public Agent getAgent() {
+    return agent;
+  }
+
+  public boolean isValidAction(int action) {
+    return Game.isValidAction(state, action);
+  }
+
+  /**
+   * Play the action in the current state
+   */
+  public void makeMove(int action) {
+    if (state.isFinished() || !isValidAction(action)) {
+      throw new IllegalArgumentException("Invalid action: " + action);
+    }
+    state = state.getNextState(action);
+  }
+
+  /**
+   * Ask the agent for its action in the current state, without playing it
+   */
+  public int getAgentAction() {
+    if (agent == null) {
+      throw new IllegalStateException("Session has no agent");
+    }
+    return agent.getAction(state);
+  }
+}
@@ -0,0 +1,76 @@
+package com.alexbaryzhikov.tictactoe;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.Position;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.game.Symmetry;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Helpers shared by tests
+ */
+public final class TestSupport {
+
+  private TestSupport() {  // prevents instantiation
+  }
+
+  /**
+   * Return random valid action of the state
+   */
+  public static int randomAction(State state, Random random) {
+    return randomAction(state.getValidActions(), random);
+  }
+
+  /**
+   * Return random valid action of the position
+   */
+  public static int randomAction(Position position, Random random) {
+    return randomAction(position.getValidActions(), random);
+  }
+
+  /**
+   * Return state after the moves, player 1 moving first
+   */
+  public static State play(int[] moves) {
+    return play(1, moves, 0);
+  }
+
+  /**
+   * Return state after the moves transformed by the symmetry
+   *
+   * @param player Player moving first
+   */
+  public static State play(int player, int[] moves, int t) {
+    State state = Game.getInitialState(player);
+    for (int action : moves) {
+      int image = Symmetry.transformAction(t, action);
+      assertTrue("Invalid move " + image, Game.isValidAction(state, image));
+      state = state.getNextState(image);
+    }
+    return state;
+  }
+
+  /**
+   * Assert that the call throws an exception of the class
+   */
+  public static void assertThrows(Class<? extends Exception> expected, Callable<?> call) {
+    try {
+      call.call();
+    } catch (Exception e) {
+      if (expected.isInstance(e)) {
+        return;
+      }
+      throw new AssertionError("Unexpected exception: " + e, e);
+    }
+    fail("Expected " + expected.getSimpleName());
+  }
+
+  private static int randomAction(long validActions, Random random) {
+    return Game.nthAction(validActions, random.nextInt(Long.bitCount(validActions)));
+  }
+}
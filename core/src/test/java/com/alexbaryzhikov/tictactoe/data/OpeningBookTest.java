@@ -0,0 +1,141 @@
+package com.alexbaryzhikov.tictactoe.data;
+
+import com.alexbaryzhikov.tictactoe.agents.Agent;
+import com.alexbaryzhikov.tictactoe.agents.BookAgent;
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.game.Symmetry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.assertThrows;
+import static com.alexbaryzhikov.tictactoe.TestSupport.play;
+import static org.junit.Assert.assertEquals;
+
+public class OpeningBookTest {
+
+  private static final int[] MOVES = {0, 1, 9};  // a position with no symmetry of its own
+  private static final int BOOK_MOVE = 10;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void getAction_symmetricPositions_mapsBookMove() throws IOException {
+    OpeningBook book = writeBook(play(1, MOVES, 0), BOOK_MOVE);
+    State state = play(1, MOVES, 0);
+    assertEquals(BOOK_MOVE, book.getAction(state));
+    for (int player = -1; player <= 1; player += 2) {  // either color
+      for (int t = 0; t < Symmetry.COUNT; t++) {
+        State image = play(player, MOVES, t);
+        int action = book.getAction(image);
+        assertEquals(Symmetry.transformAction(t, BOOK_MOVE), action);
+        assertEquals(state.getNextState(BOOK_MOVE).getSymmetricCanonicalKey(),
+            image.getNextState(action).getSymmetricCanonicalKey());
+      }
+    }
+  }
+
+  @Test
+  public void getAction_positionOffBook_returnsNone() throws IOException {
+    OpeningBook book = writeBook(play(1, MOVES, 0), BOOK_MOVE);
+    assertEquals(-1, book.getAction(Game.getInitialState(1)));
+    assertEquals(-1, book.getAction(play(1, new int[]{0, 1}, 0)));
+  }
+
+  @Test
+  public void getAction_manyEntries_findsEach() throws IOException {
+    State[] states = new State[Game.board_size];
+    long[] keys = new long[Game.board_size];
+    int[] actions = new int[Game.board_size];
+    State initial = Game.getInitialState(1);
+    int count = 0;
+    for (int a = 0; a < Game.board_size; a++) {
+      if (Game.isValidAction(initial, a)) {
+        State state = initial.getNextState(a);
+        long key = state.getSymmetricCanonicalKey();
+        boolean duplicate = false;
+        for (int i = 0; i < count; i++) {
+          duplicate |= keys[i] == key;
+        }
+        if (!duplicate) {
+          int action = Long.numberOfTrailingZeros(state.getValidActions());
+          states[count] = state;
+          keys[count] = key;
+          actions[count] = state.toCanonicalAction(action);
+          count++;
+        }
+      }
+    }
+    File file = folder.newFile();
+    OpeningBook.write(file, Arrays.copyOf(keys, count), Arrays.copyOf(actions, count));
+    OpeningBook book = new OpeningBook(file);
+    assertEquals(count, book.getCount());
+    for (int i = 0; i < count; i++) {
+      assertEquals(states[i].fromCanonicalAction(actions[i]), book.getAction(states[i]));
+    }
+  }
+
+  @Test
+  public void bookAgent_fallsBackOffBook() throws IOException {
+    OpeningBook book = writeBook(play(1, MOVES, 0), BOOK_MOVE);
+    Agent agent = new BookAgent(book, new Agent() {
+      @Override
+      public int getAction(State state) {
+        return 42;
+      }
+    });
+    assertEquals(BOOK_MOVE, agent.getAction(play(1, MOVES, 0)));
+    assertEquals(42, agent.getAction(Game.getInitialState(1)));
+  }
+
+  @Test
+  public void header_isValidated() throws IOException {
+    File file = folder.newFile();
+    OpeningBook.write(file, new long[0], new int[0]);
+    assertEquals(0, new OpeningBook(file).getCount());
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      out.writeInt(Records.MAGIC);
+    }
+    assertRejected(file);
+    OpeningBook.write(file, new long[]{1}, new int[]{0});
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      out.setLength(file.length() - 1);  // torn entry
+    }
+    assertRejected(file);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void write_duplicateKeys_throws() throws IOException {
+    OpeningBook.write(folder.newFile(), new long[]{1, 1}, new int[]{0, 1});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void write_invalidAction_throws() throws IOException {
+    OpeningBook.write(folder.newFile(), new long[]{1}, new int[]{Game.board_size});
+  }
+
+  private OpeningBook writeBook(State state, int action) throws IOException {
+    File file = folder.newFile();
+    OpeningBook.write(file, new long[]{state.getSymmetricCanonicalKey()},
+        new int[]{state.toCanonicalAction(action)});
+    return new OpeningBook(file);
+  }
+
+  private static void assertRejected(final File file) {
+    assertThrows(IOException.class, new Callable<OpeningBook>() {
+      @Override
+      public OpeningBook call() throws IOException {
+        return new OpeningBook(file);
+      }
+    });
+  }
+}
@@ -0,0 +1,253 @@
+package com.alexbaryzhikov.tictactoe.data;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.assertThrows;
+import static com.alexbaryzhikov.tictactoe.TestSupport.randomAction;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RecordsTest {
+
+  private static final int RECORDS = 3000;  // more than one write buffer
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void writeAndRead_roundTrips() throws IOException {
+    File file = folder.newFile();
+    List<State> states = new ArrayList<>();
+    List<int[]> visits = new ArrayList<>();
+    writeRecords(file, states, visits);
+    assertEquals(Records.HEADER_BYTES + (long) RECORDS * Records.RECORD_BYTES, file.length());
+
+    RecordReader reader = new RecordReader(file);
+    assertEquals(RECORDS, reader.getCount());
+    float[] board = new float[Game.board_size];
+    float[] policy = new float[Game.board_size];
+    for (int i = 0; i < RECORDS; i++) {
+      State state = states.get(i);
+      assertEquals(state.getPieces(state.getPlayer()), reader.getOwn(i));
+      assertEquals(state.getPieces(-state.getPlayer()), reader.getOpponent(i));
+      assertEquals(outcome(i), reader.getOutcome(i));
+      reader.getCanonicalBoard(i, board);
+      assertArrayEquals(state.getCanonicalBoard(), board, 0);
+      reader.getPolicy(i, policy);
+      assertPolicy(visits.get(i), reader, i, policy);
+    }
+  }
+
+  @Test
+  public void pieces_areAlignedToLongs() throws IOException {
+    assertEquals(0, Records.HEADER_BYTES % 8);
+    assertEquals(0, Records.RECORD_BYTES % 8);
+    assertEquals(0, Records.OWN % 8);
+    assertEquals(0, Records.OPPONENT % 8);
+    File file = folder.newFile();
+    writeRecords(file, new ArrayList<State>(), new ArrayList<int[]>());
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      for (int i = 0; i < RECORDS; i++) {
+        in.seek(Records.HEADER_BYTES + (long) i * Records.RECORD_BYTES + Records.PADDING);
+        for (int b = Records.PADDING; b < Records.RECORD_BYTES; b++) {
+          assertEquals(0, in.read());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void cursor_readsRecordsInOrder() throws IOException {
+    File file = folder.newFile();
+    List<State> states = new ArrayList<>();
+    writeRecords(file, states, new ArrayList<int[]>());
+    RecordReader reader = new RecordReader(file);
+    RecordReader.Cursor cursor = reader.newCursor();
+    int count = 0;
+    while (cursor.next()) {
+      assertEquals(count, cursor.getIndex());
+      State state = states.get(count);
+      assertEquals(state.getPieces(state.getPlayer()), cursor.getOwn());
+      assertEquals(state.getPieces(-state.getPlayer()), cursor.getOpponent());
+      assertEquals(outcome(count), cursor.getOutcome());
+      count++;
+    }
+    assertEquals(RECORDS, count);
+    assertFalse(cursor.next());
+  }
+
+  @Test
+  public void cursor_seekThenNext_continuesAfterRecord() throws IOException {
+    File file = folder.newFile();
+    writeRecords(file, new ArrayList<State>(), new ArrayList<int[]>());
+    RecordReader reader = new RecordReader(file);
+    RecordReader.Cursor cursor = reader.newCursor();
+    cursor.seek(1500);
+    assertEquals(reader.getOwn(1500), cursor.getOwn());
+    assertTrue(cursor.next());
+    assertEquals(1501, cursor.getIndex());
+    assertEquals(reader.getOwn(1501), cursor.getOwn());
+    cursor.seek(RECORDS - 1);
+    assertFalse(cursor.next());
+    cursor.seek(0);
+    assertEquals(reader.getOpponent(0), cursor.getOpponent());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void cursor_beforeNext_throws() throws IOException {
+    File file = folder.newFile();
+    writeRecords(file, new ArrayList<State>(), new ArrayList<int[]>());
+    new RecordReader(file).newCursor().getOwn();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void cursor_afterLastRecord_throws() throws IOException {
+    File file = folder.newFile();
+    writeRecords(file, new ArrayList<State>(), new ArrayList<int[]>());
+    RecordReader.Cursor cursor = new RecordReader(file).newCursor();
+    while (cursor.next()) {
+      cursor.getOutcome();
+    }
+    cursor.getOutcome();
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void get_outOfRange_throws() throws IOException {
+    File file = folder.newFile();
+    writeRecords(file, new ArrayList<State>(), new ArrayList<int[]>());
+    new RecordReader(file).getOwn(RECORDS);
+  }
+
+  @Test
+  public void tornTrailingRecord_isIgnored() throws IOException {
+    File file = folder.newFile();
+    writeRecords(file, new ArrayList<State>(), new ArrayList<int[]>());
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      out.setLength(file.length() + Records.RECORD_BYTES / 2);
+    }
+    RecordReader reader = new RecordReader(file);
+    assertEquals(RECORDS, reader.getCount());
+    RecordReader.Cursor cursor = reader.newCursor();
+    cursor.seek(RECORDS - 1);
+    assertFalse(cursor.next());
+  }
+
+  @Test
+  public void emptyFile_hasNoRecords() throws IOException {
+    File file = folder.newFile();
+    new RecordWriter(file).close();
+    RecordReader reader = new RecordReader(file);
+    assertEquals(0, reader.getCount());
+    assertFalse(reader.newCursor().next());
+  }
+
+  @Test
+  public void header_isValidated() throws IOException {
+    File file = folder.newFile();
+    new RecordWriter(file).close();
+    assertRejected(file, 0, 0x12345678);  // magic
+    new RecordWriter(file).close();
+    assertRejected(file, 4, Records.VERSION + 1);
+    new RecordWriter(file).close();
+    assertRejected(file, 8, Records.RECORD_BYTES + 1);
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      out.setLength(Records.HEADER_BYTES - 1);
+    }
+    assertRejected(file);
+  }
+
+  @Test
+  public void write_invalidRecord_throws() throws IOException {
+    try (RecordWriter writer = new RecordWriter(folder.newFile())) {
+      try {
+        writer.write(0, 0, new int[Game.board_size - 1], 0);
+        fail("Invalid number of actions accepted");
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+        writer.write(0, 0, new int[Game.board_size], 2);
+        fail("Invalid outcome accepted");
+      } catch (IllegalArgumentException expected) {
+      }
+      assertEquals(0, writer.getCount());
+    }
+  }
+
+  /**
+   * Write positions of random games with random visit counts
+   */
+  private static void writeRecords(File file, List<State> states, List<int[]> visits)
+      throws IOException {
+    Random random = new Random(1);
+    try (RecordWriter writer = new RecordWriter(file)) {
+      State state = Game.getInitialState(1);
+      for (int i = 0; i < RECORDS; i++) {
+        if (state.isFinished()) {
+          state = Game.getInitialState(random.nextBoolean() ? 1 : -1);
+        }
+        int[] v = new int[Game.board_size];
+        for (long a = state.getValidActions(); a != 0; a &= a - 1) {
+          v[Long.numberOfTrailingZeros(a)] = random.nextInt(1000);
+        }
+        writer.write(state, v, outcome(i));
+        states.add(state);
+        visits.add(v);
+        state = state.getNextState(randomAction(state, random));
+      }
+      assertEquals(RECORDS, writer.getCount());
+    }
+  }
+
+  private static int outcome(int i) {
+    return i % 3 - 1;
+  }
+
+  private static void assertPolicy(int[] visits, RecordReader reader, int i, float[] policy) {
+    long total = 0;
+    for (int v : visits) {
+      total += v;
+    }
+    float sum = 0;
+    for (int a = 0; a < Game.board_size; a++) {
+      long expected = total == 0 ? 0 : Math.round(255.0 * visits[a] / total);
+      assertEquals(expected, reader.getPolicy(i, a));
+      sum += policy[a];
+    }
+    if (total > 0) {
+      assertEquals(1, sum, 1e-5);
+    }
+  }
+
+  private static void assertRejected(File file, int offset, int value) throws IOException {
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      out.seek(offset);
+      out.writeInt(value);
+    }
+    assertRejected(file);
+  }
+
+  private static void assertRejected(final File file) {
+    assertThrows(IOException.class, new Callable<RecordReader>() {
+      @Override
+      public RecordReader call() throws IOException {
+        return new RecordReader(file);
+      }
+    });
+  }
+}
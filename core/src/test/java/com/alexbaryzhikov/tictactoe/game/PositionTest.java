@@ -0,0 +1,89 @@
+package com.alexbaryzhikov.tictactoe.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.randomAction;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PositionTest {
+
+  private static final int GAMES = 500;
+
+  @Test
+  public void makeMove_matchesState() {
+    Random random = new Random(1);
+    for (int game = 0; game < GAMES; game++) {
+      State state = Game.getInitialState(random.nextBoolean() ? 1 : -1);
+      Position position = new Position(state);
+      while (!state.isFinished()) {
+        int action = randomAction(state, random);
+        state = state.getNextState(action);
+        position.makeMove(action);
+        assertSame(state, position);
+        assertEquals(action, position.getLastMove());
+      }
+    }
+  }
+
+  @Test
+  public void unmakeMove_restoresPosition() {
+    Random random = new Random(2);
+    for (int game = 0; game < GAMES; game++) {
+      State[] states = new State[Game.board_size + 1];
+      states[0] = Game.getInitialState(random.nextBoolean() ? 1 : -1);
+      Position position = new Position(states[0]);
+      int depth = 0;
+      while (!position.isFinished()) {
+        position.makeMove(randomAction(states[depth], random));
+        states[++depth] = position.toState();
+      }
+      while (depth > 0) {
+        position.unmakeMove();
+        depth--;
+        assertEquals(depth, position.getDepth());
+        assertSame(states[depth], position);
+      }
+    }
+  }
+
+  @Test
+  public void toState_roundTrips() {
+    Random random = new Random(3);
+    State state = Game.getInitialState(1);
+    Position position = new Position();
+    while (!state.isFinished()) {
+      State snapshot = position.toState();
+      assertTrue(snapshot.isSamePosition(state));
+      assertEquals(state.getKey(), snapshot.getKey());
+      assertEquals(state.getCanonicalKey(), snapshot.getCanonicalKey());
+      int action = randomAction(state, random);
+      state = state.getNextState(action);
+      position.makeMove(action);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void makeMove_occupiedSquare_throws() {
+    Position position = new Position();
+    position.makeMove(0);
+    position.makeMove(0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void unmakeMove_noMoves_throws() {
+    new Position().unmakeMove();
+  }
+
+  private static void assertSame(State state, Position position) {
+    assertEquals(state.getPieces(1), position.getPieces(1));
+    assertEquals(state.getPieces(-1), position.getPieces(-1));
+    assertEquals(state.getPlayer(), position.getPlayer());
+    assertEquals(state.getKey(), position.getKey());
+    assertEquals(state.getValidActions(), position.getValidActions());
+    assertEquals(state.isFinished(), position.isFinished());
+    assertEquals(state.getValue(), position.getValue());
+  }
+}
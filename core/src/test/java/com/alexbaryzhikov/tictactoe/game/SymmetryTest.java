@@ -0,0 +1,95 @@
+package com.alexbaryzhikov.tictactoe.game;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.play;
+import static com.alexbaryzhikov.tictactoe.TestSupport.randomAction;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SymmetryTest {
+
+  private static final int GAMES = 200;
+
+  @Test
+  public void transformAction_roundTrips() {
+    for (int t = 0; t < Symmetry.COUNT; t++) {
+      for (int action = 0; action < Game.board_size; action++) {
+        int image = Symmetry.transformAction(t, action);
+        assertEquals(action, Symmetry.inverseAction(t, image));
+        assertEquals(Game.squareMask(image), Symmetry.transform(Game.squareMask(action), t));
+      }
+    }
+  }
+
+  @Test
+  public void symmetricKey_isEqualUnderAllTransforms() {
+    Random random = new Random(1);
+    for (int game = 0; game < GAMES; game++) {
+      int player = random.nextBoolean() ? 1 : -1;
+      int[] moves = new int[Game.board_size];
+      int count = 0;
+      State state = Game.getInitialState(player);
+      while (!state.isFinished()) {
+        for (int t = 0; t < Symmetry.COUNT; t++) {
+          State image = play(player, Arrays.copyOf(moves, count), t);
+          assertEquals(Symmetry.transform(state.getValidActions(), t), image.getValidActions());
+          assertEquals(state.getSymmetricKey(), image.getSymmetricKey());
+          assertEquals(state.getSymmetricCanonicalKey(), image.getSymmetricCanonicalKey());
+          assertTrue(state.isSymmetricTo(image));
+        }
+        int action = randomAction(state, random);
+        moves[count++] = action;
+        state = state.getNextState(action);
+      }
+    }
+  }
+
+  @Test
+  public void symmetricCanonicalKey_ignoresColors() {
+    Random random = new Random(2);
+    for (int game = 0; game < GAMES; game++) {
+      int[] moves = new int[Game.board_size];
+      int count = 0;
+      State state = Game.getInitialState(1);
+      while (!state.isFinished()) {
+        State swapped = play(-1, Arrays.copyOf(moves, count), 0);
+        assertEquals(state.getSymmetricCanonicalKey(), swapped.getSymmetricCanonicalKey());
+        assertEquals(state.getCanonicalKey(), swapped.getCanonicalKey());
+        int action = randomAction(state, random);
+        moves[count++] = action;
+        state = state.getNextState(action);
+      }
+    }
+  }
+
+  @Test
+  public void canonicalAction_roundTripsAndMapsBetweenImages() {
+    Random random = new Random(3);
+    for (int game = 0; game < GAMES; game++) {
+      int player = random.nextBoolean() ? 1 : -1;
+      int[] moves = new int[Game.board_size];
+      int count = 0;
+      State state = Game.getInitialState(player);
+      while (!state.isFinished()) {
+        State image = play(player, Arrays.copyOf(moves, count),
+            random.nextInt(Symmetry.COUNT));
+        for (long a = state.getValidActions(); a != 0; a &= a - 1) {
+          int action = Long.numberOfTrailingZeros(a);
+          int canonical = state.toCanonicalAction(action);
+          assertEquals(action, state.fromCanonicalAction(canonical));
+          // The same canonical action in a symmetric position is a symmetric move
+          int imageAction = image.fromCanonicalAction(canonical);
+          assertTrue(Game.isValidAction(image, imageAction));
+          assertTrue(state.getNextState(action).isSymmetricTo(image.getNextState(imageAction)));
+        }
+        int action = randomAction(state, random);
+        moves[count++] = action;
+        state = state.getNextState(action);
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.alexbaryzhikov.tictactoe.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.randomAction;
+import static org.junit.Assert.assertEquals;
+
+public class ThreatTrackerTest {
+
+  private static final int GAMES = 500;
+
+  @Test
+  public void threats_matchWinLines() {
+    Random random = new Random(1);
+    for (int game = 0; game < GAMES; game++) {
+      Position position = new Position(true);
+      while (!position.isFinished()) {
+        assertThreats(position);
+        position.makeMove(randomAction(position, random));
+      }
+    }
+  }
+
+  @Test
+  public void makeMove_detectsWins() {
+    Random random = new Random(2);
+    for (int game = 0; game < GAMES; game++) {
+      Position tracked = new Position(true);
+      Position plain = new Position(false);
+      while (!plain.isFinished()) {
+        int action = randomAction(plain, random);
+        tracked.makeMove(action);
+        plain.makeMove(action);
+        assertEquals(plain.isFinished(), tracked.isFinished());
+        assertEquals(plain.getValue(), tracked.getValue());
+      }
+    }
+  }
+
+  @Test
+  public void unmakeMove_restoresThreats() {
+    Random random = new Random(3);
+    for (int game = 0; game < GAMES; game++) {
+      Position position = new Position(true);
+      long[][] threats = new long[Game.board_size + 1][];
+      int[][] lines = new int[Game.board_size + 1][];
+      int depth = 0;
+      while (true) {
+        threats[depth] = new long[]{position.getThreats(1), position.getThreats(-1)};
+        lines[depth] = new int[]{position.getThreatLineCount(1), position.getThreatLineCount(-1)};
+        if (position.isFinished()) {
+          break;
+        }
+        position.makeMove(randomAction(position, random));
+        depth++;
+      }
+      while (depth > 0) {
+        position.unmakeMove();
+        depth--;
+        assertEquals(threats[depth][0], position.getThreats(1));
+        assertEquals(threats[depth][1], position.getThreats(-1));
+        assertEquals(lines[depth][0], position.getThreatLineCount(1));
+        assertEquals(lines[depth][1], position.getThreatLineCount(-1));
+      }
+    }
+  }
+
+  @Test
+  public void set_matchesIncrementalUpdates() {
+    Random random = new Random(4);
+    ThreatTracker tracker = new ThreatTracker();
+    for (int game = 0; game < GAMES; game++) {
+      Position position = new Position(true);
+      while (!position.isFinished()) {
+        position.makeMove(randomAction(position, random));
+        tracker.set(position.getPieces(1), position.getPieces(-1));
+        for (int player = -1; player <= 1; player += 2) {
+          assertEquals(position.getThreats(player), tracker.getThreats(player));
+          assertEquals(position.getThreatLineCount(player), tracker.getThreatLineCount(player));
+        }
+      }
+    }
+  }
+
+  /**
+   * Compare tracked threats with threats found by scanning all win lines
+   */
+  private static void assertThreats(Position position) {
+    for (int player = -1; player <= 1; player += 2) {
+      long own = position.getPieces(player);
+      long opponent = position.getPieces(-player);
+      long threats = 0;
+      int threatLines = 0;
+      for (int line = 0; line < Game.getWinLineCount(); line++) {
+        long mask = Game.getWinLine(line);
+        if ((mask & opponent) == 0 && Long.bitCount(mask & own) == Long.bitCount(mask) - 1) {
+          threats |= mask & ~own;
+          threatLines++;
+        }
+      }
+      assertEquals(threats, position.getThreats(player));
+      assertEquals(threatLines, position.getThreatLineCount(player));
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Re-rooting a searched tree two plies down and compacting it keeps the subtree of the new root,
+ * with the same statistics and a table entry for every node
+ */
+public class CompactionTest {
+
+  private static final int SIMULATIONS = 20000;
+
+  @Test
+  public void mcts_compaction_keepsSubtree() {
+    Mcts mcts = new Mcts(1, 1);
+    try {
+      mcts.setLimits(SearchLimits.ofSimulations(SIMULATIONS));
+      mcts.getDistribution(Game.getInitialState(1));
+      SearchTree tree = mcts.getTree();
+      int node = bestChild(tree, bestChild(tree, mcts.getRoot()));
+      State state = tree.getState(node);
+      List<String> subtree = describe(tree, node);
+      assertTrue(tree.getNodeCount() > subtree.size());
+
+      mcts.setLimits(reuseLimits(subtree.size()));
+      mcts.getDistribution(state);
+      assertCompacted(subtree, mcts.getTree(), mcts.getRoot(), mcts.getTable());
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  @Test
+  public void mctsP_compaction_keepsSubtree() {
+    MctsP mcts = new MctsP(new UniformEvaluator());
+    try {
+      mcts.setLimits(SearchLimits.ofSimulations(SIMULATIONS));
+      mcts.getDistribution(Game.getInitialState(1));
+      SearchTree tree = mcts.getTree();
+      int node = bestChild(tree, bestChild(tree, mcts.getRoot()));
+      State state = tree.getState(node);
+      List<String> subtree = describe(tree, node);
+      assertTrue(tree.getNodeCount() > subtree.size());
+
+      mcts.setLimits(reuseLimits(subtree.size()));
+      mcts.getDistribution(state);
+      assertCompacted(subtree, mcts.getTree(), mcts.getRoot(), mcts.getTable());
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  /**
+   * Return limits under which the search runs no simulations, and a tree holding more than the
+   * subtree of its root is compacted
+   */
+  private static SearchLimits reuseLimits(int subtreeNodes) {
+    return new SearchLimits.Builder().setSimulations(1).setNodes(subtreeNodes + 1).build();
+  }
+
+  private static void assertCompacted(List<String> subtree, SearchTree tree, int root,
+                                      TranspositionTable table) {
+    assertEquals(0, root);
+    assertEquals(subtree.size(), tree.getNodeCount());
+    assertEquals(subtree, describe(tree, root));
+    for (int node = 0; node < tree.getNodeCount(); node++) {
+      long key = tree.getState(node).getSymmetricKey();
+      int found = table.get(key);
+      assertTrue(found != SearchTree.NONE);
+      // A position reached by rollouts along different paths may have several nodes
+      assertEquals(key, tree.getState(found).getSymmetricKey());
+    }
+  }
+
+  /**
+   * Describe nodes reachable from the root in breadth-first order, each by its key, proof and
+   * edges, with children referenced by their order
+   */
+  private static List<String> describe(SearchTree tree, int root) {
+    assertTrue(root != SearchTree.NONE);
+    int[] order = new int[tree.getNodeCount()];
+    Arrays.fill(order, SearchTree.NONE);
+    int[] queue = new int[tree.getNodeCount()];
+    int size = 0;
+    order[root] = size;
+    queue[size++] = root;
+    List<String> nodes = new ArrayList<>();
+    for (int head = 0; head < size; head++) {
+      int node = queue[head];
+      StringBuilder description = new StringBuilder()
+          .append(Long.toHexString(tree.getState(node).getSymmetricKey()))
+          .append(' ').append(tree.getProof(node));
+      int first = tree.getFirstEdge(node);
+      for (int edge = first; edge < first + tree.getEdgeCount(node); edge++) {
+        description.append(' ').append(tree.getAction(edge))
+            .append(':').append(tree.getVisits(edge))
+            .append(':').append(tree.getValueSum(edge));
+        int child = tree.getChild(edge);
+        if (child != SearchTree.NONE) {
+          if (order[child] == SearchTree.NONE) {
+            order[child] = size;
+            queue[size++] = child;
+          }
+          description.append(':').append(order[child]);
+        }
+      }
+      nodes.add(description.toString());
+    }
+    return nodes;
+  }
+
+  /**
+   * Return the most visited child of the node
+   */
+  private static int bestChild(SearchTree tree, int node) {
+    int first = tree.getFirstEdge(node);
+    int best = first;
+    for (int edge = first; edge < first + tree.getEdgeCount(node); edge++) {
+      if (tree.getVisits(edge) > tree.getVisits(best)) {
+        best = edge;
+      }
+    }
+    int child = tree.getChild(best);
+    assertTrue(child != SearchTree.NONE);
+    return child;
+  }
+}
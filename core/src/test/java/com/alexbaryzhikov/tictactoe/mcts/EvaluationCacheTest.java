@@ -0,0 +1,184 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.game.Symmetry;
+
+import org.junit.Test;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.play;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EvaluationCacheTest {
+
+  private static final int WAYS = 4;
+  private static final int[] MOVES = {0, 1, 2};  // position with no symmetries
+
+  @Test
+  public void get_afterPut_returnsResult() {
+    EvaluationCache cache = new EvaluationCache(1 << 20);
+    float[] pi = new float[Game.board_size + 1];
+    float[] value = new float[2];
+    assertFalse(cache.get(1, pi, 1, value, 1));
+    cache.put(1, pi(1), 0, 0.5f);
+    assertTrue(cache.get(1, pi, 1, value, 1));
+    float[] expected = new float[Game.board_size + 1];
+    System.arraycopy(pi(1), 0, expected, 1, Game.board_size);
+    assertArrayEquals(expected, pi, 0);
+    assertEquals(0.5f, value[1], 0);
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void put_fullSet_evictsByClock() {
+    EvaluationCache cache = new EvaluationCache(0);  // a single set
+    for (long key = 0; key < WAYS; key++) {
+      cache.put(key, pi(key), 0, key);
+    }
+    assertCached(cache, 0);  // referenced, so the hand passes it over
+    cache.put(WAYS, pi(WAYS), 0, WAYS);
+    assertCached(cache, 0, 2, 3, WAYS);
+    assertNotCached(cache, 1);
+    // The hand went round, clearing reference bits, and moves on to the next entry
+    cache.put(WAYS + 1, pi(WAYS + 1), 0, WAYS + 1);
+    assertNotCached(cache, 2);
+    assertCached(cache, 0, 3, WAYS, WAYS + 1);
+  }
+
+  @Test
+  public void put_fullSet_keepsOtherSets() {
+    EvaluationCache cache = new EvaluationCache(1 << 20);
+    long other = 0;
+    long[] keys = new long[WAYS + 1];
+    int count = 0;
+    for (long key = 1; count < keys.length; key++) {
+      if (cache.set(key) == cache.set(0)) {
+        keys[count++] = key;
+      } else if (other == 0) {
+        other = key;
+      }
+    }
+    cache.put(other, pi(other), 0, 1);
+    for (long key : keys) {
+      cache.put(key, pi(key), 0, 1);
+    }
+    assertNotCached(cache, keys[0]);
+    assertCached(cache, keys[1], keys[2], keys[3], keys[4], other);
+  }
+
+  @Test
+  public void put_cachedKey_replacesResult() {
+    EvaluationCache cache = new EvaluationCache(0);
+    cache.put(1, pi(1), 0, 0.25f);
+    cache.put(1, pi(2), 0, 0.5f);
+    float[] pi = new float[Game.board_size];
+    float[] value = new float[1];
+    assertTrue(cache.get(1, pi, 0, value, 0));
+    assertArrayEquals(pi(2), pi, 0);
+    assertEquals(0.5f, value[0], 0);
+    // The rest of the set is still free
+    for (long key = 2; key < WAYS + 1; key++) {
+      cache.put(key, pi(key), 0, 0);
+    }
+    assertCached(cache, 2, 3, 4);
+    assertTrue(cache.get(1, pi, 0, value, 0));
+  }
+
+  @Test
+  public void mctsP_symmetricImage_hitsCacheInImageOrientation() {
+    EvaluationCache cache = new EvaluationCache(1 << 20);
+    CountingEvaluator evaluator = new CountingEvaluator();
+    State state = play(MOVES);
+    float[] priors = searchRoot(evaluator, cache, state);
+    assertEquals(1, evaluator.boards);
+    for (int t = 1; t < Symmetry.COUNT; t++) {
+      State image = play(1, MOVES, t);
+      assertFalse(image.isSamePosition(state));
+      float[] imagePriors = searchRoot(evaluator, cache, image);
+      assertEquals("Image " + t + " evaluated", 1, evaluator.boards);
+      for (int action = 0; action < Game.board_size; action++) {
+        assertEquals(priors[action], imagePriors[Symmetry.transformAction(t, action)], 0);
+      }
+    }
+    assertEquals(Symmetry.COUNT - 1, cache.getHits());
+  }
+
+  /**
+   * Search only the root of the state with a new engine and return priors of the root actions
+   */
+  private static float[] searchRoot(Evaluator evaluator, EvaluationCache cache, State state) {
+    MctsP mcts = new MctsP(evaluator);
+    try {
+      mcts.setEvaluationCache(cache);
+      mcts.setLimits(SearchLimits.ofSimulations(1));
+      mcts.getDistribution(state);
+      SearchTree tree = mcts.getTree();
+      int root = mcts.getRoot();
+      float[] priors = new float[Game.board_size];
+      int first = tree.getFirstEdge(root);
+      assertEquals(Long.bitCount(state.getValidActions()), tree.getEdgeCount(root));
+      for (int edge = first; edge < first + tree.getEdgeCount(root); edge++) {
+        priors[tree.getAction(edge)] = tree.getPrior(edge);
+      }
+      return priors;
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  /**
+   * Return Pi distinct for each key
+   */
+  private static float[] pi(long key) {
+    float[] pi = new float[Game.board_size];
+    for (int a = 0; a < Game.board_size; a++) {
+      pi[a] = key * Game.board_size + a;
+    }
+    return pi;
+  }
+
+  private static void assertCached(EvaluationCache cache, long... keys) {
+    float[] pi = new float[Game.board_size];
+    float[] value = new float[1];
+    for (long key : keys) {
+      assertTrue("Key " + key + " evicted", cache.get(key, pi, 0, value, 0));
+      assertArrayEquals(pi(key), pi, 0);
+    }
+  }
+
+  private static void assertNotCached(EvaluationCache cache, long key) {
+    assertFalse("Key " + key + " cached",
+        cache.get(key, new float[Game.board_size], 0, new float[1], 0));
+  }
+
+  /**
+   * Evaluator whose Pi depends on the orientation of the board: it favors higher squares.
+   * Counts evaluated boards.
+   */
+  private static final class CountingEvaluator implements Evaluator {
+
+    int boards;
+
+    @Override
+    public float predict(float[] pi, float[] canonicalBoard) {
+      boards++;
+      for (int a = 0; a < Game.board_size; a++) {
+        pi[a] = (a + 1f) / (Game.board_size * (Game.board_size + 1) / 2);
+      }
+      return 0.5f;
+    }
+
+    @Override
+    public void predict(float[] pi, float[] value, float[] boards, int batch) {
+      for (int i = 0; i < batch; i++) {
+        float[] boardPi = new float[Game.board_size];
+        value[i] = predict(boardPi, null);
+        System.arraycopy(boardPi, 0, pi, i * Game.board_size, Game.board_size);
+      }
+    }
+  }
+}
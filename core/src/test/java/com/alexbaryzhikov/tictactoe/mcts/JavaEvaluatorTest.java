@@ -0,0 +1,141 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.assertThrows;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class JavaEvaluatorTest {
+
+  private static final int MAGIC = 0x424E4E31;
+  private static final int CONV = 1;
+  private static final int DENSE = 3;
+  private static final int RELU = 1;
+  private static final int TANH = 2;
+  private static final int SOFTMAX = 3;
+  private static final int CHANNELS = 4;
+
+  @Test
+  public void load_validNetwork_predicts() throws IOException {
+    JavaEvaluator evaluator = JavaEvaluator.load(stream(network()));
+    float[] pi = new float[Game.board_size];
+    float value = evaluator.predict(pi, Game.getInitialState(1).getCanonicalBoard());
+    float sum = 0;
+    for (float p : pi) {
+      sum += p;
+    }
+    assertEquals(1, sum, 1e-5);
+    assertEquals(0, value, 1);
+  }
+
+  @Test
+  public void copy_predictsSameAsOriginal() throws IOException {
+    JavaEvaluator evaluator = JavaEvaluator.load(stream(network()));
+    JavaEvaluator copy = evaluator.copy();
+    float[] board = Game.getInitialState(1).getNextState(24).getCanonicalBoard();
+    float[] pi = new float[Game.board_size];
+    float[] copyPi = new float[Game.board_size];
+    assertEquals(evaluator.predict(pi, board), copy.predict(copyPi, board), 0);
+    assertArrayEquals(pi, copyPi, 0);
+  }
+
+  @Test
+  public void load_oversizedConv_throws() throws IOException {
+    // 65536 * 65536 * 7 * 7 overflows int
+    assertRejected(layerHeader(CONV, 1 << 16, 1 << 16, 7, RELU));
+    assertRejected(layerHeader(CONV, 1 << 16, 1 << 10, 7, RELU));
+  }
+
+  @Test
+  public void load_oversizedResidual_throws() throws IOException {
+    assertRejected(layerHeader(2, 1 << 16, 7));
+  }
+
+  @Test
+  public void load_oversizedDense_throws() throws IOException {
+    // 65536 * 65536 overflows int to 0
+    assertRejected(layerHeader(DENSE, 1 << 16, 1 << 16, TANH));
+  }
+
+  @Test
+  public void load_invalidHeaders_throws() throws IOException {
+    assertRejected(layerHeader(CONV, 0, 1, 3, RELU));
+    assertRejected(layerHeader(CONV, 1, 1, 2, RELU));
+    assertRejected(layerHeader(DENSE, 1, 1, 4));
+    assertRejected(layerHeader(4));
+    byte[] bytes = network();
+    byte[] truncated = new byte[bytes.length - 1];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+    assertRejected(truncated);
+  }
+
+  /**
+   * Return weights of a small network: conv trunk, dense policy and value heads
+   */
+  private static byte[] network() throws IOException {
+    Random random = new Random(1);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(1);
+    writeInts(out, CONV, 1, CHANNELS, 3, RELU);
+    writeFloats(out, random, CHANNELS * 9 + CHANNELS);
+    out.writeInt(1);
+    writeInts(out, DENSE, CHANNELS * Game.board_size, Game.board_size, SOFTMAX);
+    writeFloats(out, random, CHANNELS * Game.board_size * Game.board_size + Game.board_size);
+    out.writeInt(1);
+    writeInts(out, DENSE, CHANNELS * Game.board_size, 1, TANH);
+    writeFloats(out, random, CHANNELS * Game.board_size + 1);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Return weights file whose trunk starts with a layer header and has no weights after it
+   */
+  private static byte[] layerHeader(int... header) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(1);
+    writeInts(out, header);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void writeInts(DataOutputStream out, int... values) throws IOException {
+    for (int v : values) {
+      out.writeInt(v);
+    }
+  }
+
+  private static void writeFloats(DataOutputStream out, Random random, int count)
+      throws IOException {
+    for (int i = 0; i < count; i++) {
+      out.writeFloat((float) (random.nextGaussian() * 0.1));
+    }
+  }
+
+  private static ByteArrayInputStream stream(byte[] bytes) {
+    return new ByteArrayInputStream(bytes);
+  }
+
+  private static void assertRejected(final byte[] bytes) {
+    assertThrows(IOException.class, new Callable<JavaEvaluator>() {
+      @Override
+      public JavaEvaluator call() throws IOException {
+        return JavaEvaluator.load(stream(bytes));
+      }
+    });
+  }
+}
@@ -0,0 +1,106 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.randomAction;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Searches with key collision verification enabled: a collision fails the search
+ */
+public class KeyVerificationTest {
+
+  private static final int POSITIONS = 20;
+
+  @Test(expected = IllegalStateException.class)
+  public void verifyKey_differentPositions_throws() {
+    State state = Game.getInitialState(1);
+    Game.verifyKey(state.getNextState(0), state.getNextState(1));
+  }
+
+  @Test
+  public void verifyKey_symmetricPositions_passes() {
+    State state = Game.getInitialState(1);
+    Game.verifyKey(state.getNextState(0), state.getNextState(Game.N - 1));
+  }
+
+  @Test
+  public void mctsSearch_noKeyCollisions() {
+    Mcts mcts = new Mcts(2, 1);
+    mcts.setKeyVerification(true);
+    mcts.setLimits(SearchLimits.ofSimulations(2000));
+    try {
+      Random random = new Random(1);
+      for (int i = 0; i < POSITIONS; i++) {
+        assertSearched(mcts.getDistribution(randomState(random)));
+      }
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  @Test
+  public void mctsPSearch_noKeyCollisions() {
+    MctsP mcts = new MctsP(new UniformEvaluator(), 2);
+    mcts.setKeyVerification(true);
+    mcts.setLimits(SearchLimits.ofSimulations(500));
+    try {
+      Random random = new Random(2);
+      for (int i = 0; i < POSITIONS; i++) {
+        assertSearched(mcts.getDistribution(randomState(random)));
+      }
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  @Test
+  public void randomGames_noKeyCollisions() {
+    Map<Long, State> keys = new HashMap<>();
+    Map<Long, State> symmetricKeys = new HashMap<>();
+    Random random = new Random(3);
+    for (int game = 0; game < 2000; game++) {
+      State state = Game.getInitialState(random.nextBoolean() ? 1 : -1);
+      while (!state.isFinished()) {
+        State other = keys.put(state.getKey(), state);
+        assertTrue(other == null || other.isSamePosition(state));
+        other = symmetricKeys.put(state.getSymmetricKey(), state);
+        assertTrue(other == null || other.isSymmetricTo(state));
+        state = state.getNextState(randomAction(state, random));
+      }
+    }
+  }
+
+  private static void assertSearched(int[] visits) {
+    assertTrue("Search was cancelled", visits != null && visits.length == Game.board_size);
+    int total = 0;
+    for (int v : visits) {
+      total += v;
+    }
+    assertTrue("No visits: " + Arrays.toString(visits), total > 0);
+  }
+
+  /**
+   * Return position after a random number of random moves, not finished
+   */
+  private static State randomState(Random random) {
+    while (true) {
+      State state = Game.getInitialState(random.nextBoolean() ? 1 : -1);
+      int moves = random.nextInt(20);
+      for (int i = 0; i < moves && !state.isFinished(); i++) {
+        state = state.getNextState(randomAction(state, random));
+      }
+      if (!state.isFinished()) {
+        return state;
+      }
+    }
+  }
+}
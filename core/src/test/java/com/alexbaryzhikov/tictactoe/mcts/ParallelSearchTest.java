@@ -0,0 +1,120 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelSearchTest {
+
+  private static final int THREADS = 4;
+  private static final int SIMULATIONS = 2000;
+
+  @Test(timeout = 60000)
+  public void sharedEvaluator_isNotCalledConcurrently() {
+    CheckingEvaluator evaluator = new CheckingEvaluator();
+    search(new MctsP(evaluator, THREADS));
+    assertTrue(evaluator.calls.get() > 0);
+    assertFalse(evaluator.overlapped.get());
+  }
+
+  @Test(timeout = 60000)
+  public void evaluatorPerThread_searches() {
+    CheckingEvaluator[] evaluators = new CheckingEvaluator[THREADS];
+    for (int i = 0; i < THREADS; i++) {
+      evaluators[i] = new CheckingEvaluator();
+    }
+    search(new MctsP(evaluators));
+    int calls = 0;
+    for (CheckingEvaluator evaluator : evaluators) {
+      calls += evaluator.calls.get();
+      assertFalse(evaluator.overlapped.get());
+    }
+    assertTrue(calls > 0);
+  }
+
+  @Test(timeout = 60000)
+  public void ensemble_engineEvaluatorsAreNotShared() {
+    CheckingEvaluator[] evaluators = new CheckingEvaluator[THREADS];
+    for (int i = 0; i < THREADS; i++) {
+      evaluators[i] = new CheckingEvaluator();
+    }
+    MctsEnsemble ensemble = MctsEnsemble.ofMctsP(evaluators, 1);
+    ensemble.setLimits(SearchLimits.ofSimulations(SIMULATIONS));
+    try {
+      ensemble.getDistribution(Game.getInitialState(1));
+    } finally {
+      ensemble.shutdown();
+    }
+    for (CheckingEvaluator evaluator : evaluators) {
+      assertTrue(evaluator.calls.get() > 0);
+      assertEquals("Threads calling one evaluator", 1, evaluator.threads.size());
+      assertFalse(evaluator.overlapped.get());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void ensemble_sharedEvaluator_throws() {
+    CheckingEvaluator evaluator = new CheckingEvaluator();
+    MctsEnsemble.ofMctsP(new Evaluator[]{new CheckingEvaluator(), evaluator, evaluator}, 1);
+  }
+
+  private static void search(MctsP mcts) {
+    mcts.setLimits(SearchLimits.ofSimulations(SIMULATIONS));
+    mcts.setEvaluationCache(null);
+    try {
+      int[] visits = mcts.getDistribution(Game.getInitialState(1));
+      int total = 0;
+      for (int v : visits) {
+        total += v;
+      }
+      // Simulations reaching the root before it is expanded add no root action visits
+      assertTrue("Visits: " + total, total >= SIMULATIONS / 2);
+      assertEquals(Game.board_size, visits.length);
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  /**
+   * Uniform evaluator recording its callers and calls that overlap in time
+   */
+  private static final class CheckingEvaluator implements Evaluator {
+
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicBoolean overlapped = new AtomicBoolean();
+    final Set<Thread> threads =
+        Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    @Override
+    public float predict(float[] pi, float[] canonicalBoard) {
+      float[] value = new float[1];
+      predict(pi, value, canonicalBoard, 1);
+      return value[0];
+    }
+
+    @Override
+    public void predict(float[] pi, float[] value, float[] boards, int batch) {
+      if (!busy.compareAndSet(false, true)) {
+        overlapped.set(true);
+      }
+      calls.incrementAndGet();
+      threads.add(Thread.currentThread());
+      Arrays.fill(pi, 0, batch * Game.board_size, 1f / Game.board_size);
+      Arrays.fill(value, 0, batch, 0);
+      Thread.yield();  // give other threads a chance to overlap
+      busy.set(false);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchBudgetTest {
+
+  @Test
+  public void acquire_simulationLimit_reservesUpToLimit() {
+    SearchBudget budget = start(SearchLimits.ofSimulations(100), newTree(0, 0));
+    assertEquals(64, budget.acquire(64));
+    assertEquals(36, budget.acquire(64));
+    assertEquals(0, budget.acquire(1));
+  }
+
+  @Test
+  public void acquire_reusedRoot_needsFewerSimulations() {
+    SearchBudget budget = start(SearchLimits.ofSimulations(100), newTree(30, 10));
+    assertEquals(60, acquireAll(budget));
+    assertEquals(100, budget.getProgress());
+  }
+
+  @Test
+  public void acquire_rootOverSimulationLimit_refuses() {
+    SearchBudget budget = start(SearchLimits.ofSimulations(100), newTree(80, 40));
+    assertEquals(0, budget.acquire(1));
+  }
+
+  @Test
+  public void acquire_leadOverRemainingSimulations_stopsEarly() {
+    SearchLimits limits = new SearchLimits.Builder()
+        .setSimulations(1000)
+        .setEarlyStop(true)
+        .build();
+    // Lead of 600 can't be overtaken in the 1000 - 600 - 63 simulations left at the first check
+    assertEquals(63, acquireAll(start(limits, newTree(600, 0))));
+    // Without a lead the search runs to the limit
+    assertEquals(400, acquireAll(start(limits, newTree(300, 300))));
+    // Without early stop too
+    assertEquals(400, acquireAll(start(SearchLimits.ofSimulations(1000), newTree(600, 0))));
+  }
+
+  @Test
+  public void acquire_provenLosingMove_doesNotCountForEarlyStop() {
+    SearchLimits limits = new SearchLimits.Builder()
+        .setSimulations(1000)
+        .setEarlyStop(true)
+        .build();
+    SearchTree tree = newTree(600, 100, 0);
+    tree.setProof(tree.getChild(0), SearchTree.WIN);  // the move loses
+    // Lead of 100 is larger than the simulations left at the check after 255
+    assertEquals(255, acquireAll(start(limits, tree)));
+  }
+
+  @Test
+  public void acquire_nodeLimit_stops() {
+    SearchTree tree = newTree(0, 0);  // root and 2 children
+    SearchLimits limits = new SearchLimits.Builder().setNodes(3).build();
+    assertEquals(0, start(limits, tree).acquire(1));
+    limits = new SearchLimits.Builder().setNodes(4).build();
+    SearchBudget budget = start(limits, tree);
+    assertEquals(1, budget.acquire(1));
+    tree.addNode(Game.getInitialState(1));
+    assertEquals(0, budget.acquire(1));
+  }
+
+  @Test
+  public void acquire_memoryLimit_stops() {
+    SearchTree tree = newTree(0, 0);
+    SearchLimits limits = new SearchLimits.Builder().setMemory(tree.getMemoryUsage()).build();
+    assertEquals(0, start(limits, tree).acquire(1));
+    limits = new SearchLimits.Builder().setMemory(tree.getMemoryUsage() + 1).build();
+    assertEquals(1, start(limits, tree).acquire(1));
+  }
+
+  @Test
+  public void acquire_afterDeadline_refuses() throws InterruptedException {
+    SearchBudget budget = start(SearchLimits.ofTime(20), newTree(0, 0));
+    assertEquals(1, budget.acquire(1));
+    Thread.sleep(40);
+    assertEquals(0, budget.acquire(1));
+    assertEquals(100, budget.getProgress());
+  }
+
+  @Test
+  public void acquire_afterStop_refuses() {
+    SearchBudget budget = start(SearchLimits.ofTime(60000), newTree(0, 0));
+    assertEquals(1, budget.acquire(1));
+    budget.stop();
+    assertEquals(0, budget.acquire(1));
+  }
+
+  @Test
+  public void getProgress_countsEarlierVisits() {
+    SearchBudget budget = start(SearchLimits.ofSimulations(200), newTree(50, 0));
+    assertEquals(25, budget.getProgress());
+    budget.acquire(50);
+    assertEquals(50, budget.getProgress());
+  }
+
+  private static SearchBudget start(SearchLimits limits, SearchTree tree) {
+    SearchBudget budget = new SearchBudget();
+    budget.start(limits, tree, 0);
+    return budget;
+  }
+
+  private static int acquireAll(SearchBudget budget) {
+    int total = 0;
+    for (int count = budget.acquire(1); count > 0; count = budget.acquire(1)) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * Return tree of the initial position whose root has a child per edge with the given visits
+   */
+  private static SearchTree newTree(int... visits) {
+    SearchTree tree = new SearchTree(false);
+    State state = Game.getInitialState(1);
+    int root = tree.addNode(state);
+    int first = tree.addEdges(visits.length);
+    tree.setEdges(root, first, visits.length);
+    for (int i = 0; i < visits.length; i++) {
+      tree.setEdge(first + i, i, tree.addNode(state.getNextState(i)), 0);
+      for (int v = 0; v < visits[i]; v++) {
+        tree.addVirtualLoss(first + i);
+        tree.update(first + i, 0);
+      }
+    }
+    assertEquals(visits.length + 1, tree.getNodeCount());
+    return tree;
+  }
+}
@@ -0,0 +1,139 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.alexbaryzhikov.tictactoe.TestSupport.play;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolverTest {
+
+  // Top row is 0..6, bottom row is 42..48. Player 1 moves first.
+  // Player 1 has 0 1 2 and wins at 3, player -1 has 42 43 44 and threatens 45.
+  private static final int[] WIN_IN_ONE = {0, 42, 1, 43, 2, 44};
+  // Player -1 threatens 45 and 27 (right column 6 13 20), player 1 has no threats.
+  private static final int[] LOST = {0, 42, 14, 43, 28, 44, 2, 6, 4, 13, 48, 20};
+
+  // Searches stop once the root is proven, long before this limit
+  private static final int SIMULATIONS = 200000;
+  private static final SearchLimits UNTIL_PROVEN = SearchLimits.ofSimulations(SIMULATIONS);
+
+  @Test
+  public void prove_childLoss_provesWin() {
+    SearchTree tree = newTree(2);
+    tree.setProof(tree.getChild(1), SearchTree.LOSS);
+    assertTrue(tree.prove(0, 1));
+    assertEquals(SearchTree.WIN, tree.getProof(0));
+  }
+
+  @Test
+  public void prove_allChildrenWin_provesLoss() {
+    SearchTree tree = newTree(2);
+    tree.setProof(tree.getChild(0), SearchTree.WIN);
+    assertFalse(tree.prove(0, 0));
+    assertEquals(SearchTree.UNKNOWN, tree.getProof(0));
+    tree.setProof(tree.getChild(1), SearchTree.WIN);
+    assertTrue(tree.prove(0, 1));
+    assertEquals(SearchTree.LOSS, tree.getProof(0));
+  }
+
+  @Test
+  public void prove_unexpandedChild_isUnknown() {
+    SearchTree tree = newTree(2);
+    tree.setChild(1, SearchTree.NONE);
+    tree.setProof(tree.getChild(0), SearchTree.WIN);
+    assertFalse(tree.prove(0, 0));
+    assertEquals(SearchTree.UNKNOWN, tree.getProof(0));
+  }
+
+  @Test
+  public void mctsSearch_winInOne_keepsOnlyWinningMove() {
+    Mcts mcts = new Mcts(1, 1);
+    mcts.setLimits(UNTIL_PROVEN);
+    try {
+      assertOnlyMove(3, mcts.getDistribution(play(WIN_IN_ONE)));
+      assertEquals(SearchTree.WIN, mcts.getRootProof());
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  @Test
+  public void mctsPSearch_winInOne_keepsOnlyWinningMove() {
+    MctsP mcts = new MctsP(new UniformEvaluator());
+    mcts.setLimits(UNTIL_PROVEN);
+    try {
+      assertOnlyMove(3, mcts.getDistribution(play(WIN_IN_ONE)));
+      assertEquals(SearchTree.WIN, mcts.getRootProof());
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  @Test
+  public void mctsSearch_lostPosition_isProven() {
+    Mcts mcts = new Mcts(1, 1);
+    mcts.setLimits(UNTIL_PROVEN);
+    try {
+      assertStoppedEarly(mcts.getDistribution(play(LOST)));
+      assertEquals(SearchTree.LOSS, mcts.getRootProof());
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  @Test
+  public void mctsPSearch_lostPosition_isProven() {
+    MctsP mcts = new MctsP(new UniformEvaluator());
+    mcts.setLimits(UNTIL_PROVEN);
+    try {
+      assertStoppedEarly(mcts.getDistribution(play(LOST)));
+      assertEquals(SearchTree.LOSS, mcts.getRootProof());
+    } finally {
+      mcts.shutdown();
+    }
+  }
+
+  /**
+   * Return tree of the initial position, whose root has the given number of expanded children
+   */
+  private static SearchTree newTree(int children) {
+    SearchTree tree = new SearchTree(false);
+    State state = Game.getInitialState(1);
+    int root = tree.addNode(state);
+    int first = tree.addEdges(children);
+    tree.setEdges(root, first, children);
+    for (int i = 0; i < children; i++) {
+      tree.setEdge(first + i, i, tree.addNode(state.getNextState(i)), 0);
+    }
+    return tree;
+  }
+
+  private static void assertOnlyMove(int action, int[] visits) {
+    for (int i = 0; i < visits.length; i++) {
+      if (i == action) {
+        assertTrue("Winning move not visited", visits[i] > 0);
+      } else {
+        assertEquals("Visits of " + i + ": " + Arrays.toString(visits), 0, visits[i]);
+      }
+    }
+  }
+
+  /**
+   * Assert that the search stopped before the simulation limit, as only a proven root does
+   */
+  private static void assertStoppedEarly(int[] visits) {
+    assertEquals(Game.board_size, visits.length);
+    int total = 0;
+    for (int v : visits) {
+      total += v;
+    }
+    assertTrue("Visits: " + total, total < SIMULATIONS);
+  }
+}
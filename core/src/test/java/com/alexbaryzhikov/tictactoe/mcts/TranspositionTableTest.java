@@ -0,0 +1,103 @@
+package com.alexbaryzhikov.tictactoe.mcts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TranspositionTableTest {
+
+  private static final int BUCKET = 8;  // a table without memory budget has one bucket
+
+  @Test
+  public void put_thenGet_findsNode() {
+    TranspositionTable table = new TranspositionTable(1 << 20);
+    for (int i = 0; i < 1000; i++) {
+      table.put(key(i), i, i % 49);
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, table.get(key(i)));
+    }
+    assertEquals(SearchTree.NONE, table.get(key(1000)));
+    assertEquals(1000, table.size());
+  }
+
+  @Test
+  public void put_sameKey_replacesNode() {
+    TranspositionTable table = new TranspositionTable(0);
+    table.put(1, 10, 3);
+    table.put(1, 11, 3);
+    assertEquals(11, table.get(1));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void put_fullBucket_replacesDeepestEntry() {
+    TranspositionTable table = new TranspositionTable(0);
+    for (int i = 0; i < BUCKET; i++) {
+      table.put(key(i), i, 10 + i);
+    }
+    table.put(key(BUCKET), BUCKET, 0);
+    assertEquals(SearchTree.NONE, table.get(key(BUCKET - 1)));
+    for (int i = 0; i < BUCKET - 1; i++) {
+      assertEquals(i, table.get(key(i)));
+    }
+    assertEquals(BUCKET, table.get(key(BUCKET)));
+  }
+
+  @Test
+  public void put_fullBucket_replacesOlderGenerationFirst() {
+    TranspositionTable table = new TranspositionTable(0);
+    for (int i = 0; i < BUCKET; i++) {
+      table.put(key(i), i, 10 + i);
+    }
+    table.put(key(0), 0, 0);  // shallowest entry
+    table.nextGeneration();
+    for (int i = 1; i < BUCKET; i++) {
+      assertEquals(i, table.get(key(i)));  // touched entries move to the new generation
+    }
+    table.put(key(BUCKET), BUCKET, 40);
+    assertEquals(SearchTree.NONE, table.get(key(0)));
+    for (int i = 1; i <= BUCKET; i++) {
+      assertEquals(i, table.get(key(i)));
+    }
+  }
+
+  @Test
+  public void clear_removesEntries() {
+    TranspositionTable table = new TranspositionTable(1 << 10);
+    table.put(1, 1, 1);
+    table.nextGeneration();
+    table.clear();
+    assertEquals(SearchTree.NONE, table.get(1));
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void getMemoryBudget_followsLimits() {
+    long defaultTreeMemory = 256 << 20;
+    long timeOnly = TranspositionTable.getMemoryBudget(SearchLimits.ofTime(1000),
+        defaultTreeMemory);
+    assertEquals(defaultTreeMemory / 8, timeOnly);
+    long small = TranspositionTable.getMemoryBudget(SearchLimits.ofSimulations(1000),
+        defaultTreeMemory);
+    long large = TranspositionTable.getMemoryBudget(SearchLimits.ofSimulations(1000000),
+        defaultTreeMemory);
+    assertTrue(small < large);
+    assertTrue("Table smaller than the tree", large / 14 >= 1000000);
+    assertEquals(timeOnly, TranspositionTable.getMemoryBudget(
+        SearchLimits.ofSimulations(Integer.MAX_VALUE), defaultTreeMemory));
+    SearchLimits limits = new SearchLimits.Builder()
+        .setSimulations(1000)
+        .setNodes(100000)
+        .setMemory(1L << 30)
+        .build();
+    assertEquals(100000 * 2 * 14, TranspositionTable.getMemoryBudget(limits, defaultTreeMemory));
+    limits = new SearchLimits.Builder().setTime(1000).setMemory(1 << 20).build();
+    assertEquals(1 << 17, TranspositionTable.getMemoryBudget(limits, defaultTreeMemory));
+  }
+
+  private static long key(int i) {
+    return i * 0x5DEECE66DL + 1;
+  }
+}
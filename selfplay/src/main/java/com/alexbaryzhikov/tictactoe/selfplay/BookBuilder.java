@@ -0,0 +1,134 @@
+package com.alexbaryzhikov.tictactoe.selfplay;
+
+import com.alexbaryzhikov.tictactoe.agents.Agent;
+import com.alexbaryzhikov.tictactoe.agents.MctsAgent;
+import com.alexbaryzhikov.tictactoe.agents.MctsPAgent;
+import com.alexbaryzhikov.tictactoe.data.OpeningBook;
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.Evaluator;
+import com.alexbaryzhikov.tictactoe.mcts.JavaEvaluator;
+import com.alexbaryzhikov.tictactoe.mcts.Mcts;
+import com.alexbaryzhikov.tictactoe.mcts.MctsP;
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
+import com.alexbaryzhikov.tictactoe.mcts.SearchLimits;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Offline builder of the {@link OpeningBook}.
+ * <p>
+ * The book covers the first plies of games where the agent plays its book moves, against any
+ * moves of the opponent, both when the agent moves first and second. Each agent position is
+ * searched once with a long search; positions equal up to symmetry or colors share the search.
+ * <p>
+ * Arguments: output file, plies, search time per position in milliseconds, search threads, and
+ * optionally a network file of {@link JavaEvaluator}. With a network positions are searched by
+ * {@link MctsP}, else by {@link Mcts}.
+ */
+public final class BookBuilder {
+
+  private final Agent agent;
+  private final Map<Long, Integer> book = new LinkedHashMap<>();  // key -> canonical action
+  private final long start = System.currentTimeMillis();
+
+  private BookBuilder(Agent agent) {
+    this.agent = agent;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4) {
+      System.err.println("Usage: BookBuilder output plies milliseconds threads [network]");
+      System.exit(1);
+    }
+    File output = new File(args[0]);
+    int plies = Integer.parseInt(args[1]);
+    long time = Long.parseLong(args[2]);
+    int threads = Integer.parseInt(args[3]);
+
+    SearchEngine engine;
+    Agent agent;
+    if (args.length > 4) {
+      JavaEvaluator evaluator = JavaEvaluator.load(new File(args[4]));
+      Evaluator[] evaluators = new Evaluator[threads];  // one per thread, to evaluate in parallel
+      evaluators[0] = evaluator;
+      for (int i = 1; i < threads; i++) {
+        evaluators[i] = evaluator.copy();
+      }
+      engine = new MctsP(evaluators);
+      agent = new MctsPAgent(engine);
+    } else {
+      engine = new Mcts(threads);
+      agent = new MctsAgent(engine);
+    }
+    engine.setLimits(SearchLimits.ofTime(time));
+    try {
+      BookBuilder builder = new BookBuilder(agent);
+      builder.build(plies, 0);
+      builder.build(plies, 1);
+      builder.write(output);
+    } finally {
+      engine.shutdown();
+    }
+  }
+
+  /**
+   * Add positions of the first plies, where the agent moves at plies of the given parity
+   */
+  private void build(int plies, int agentParity) {
+    Map<Long, State> positions = new LinkedHashMap<>();
+    State initial = Game.getInitialState(1);
+    positions.put(initial.getSymmetricCanonicalKey(), initial);
+    for (int ply = 0; ply < plies; ply++) {
+      Map<Long, State> next = new LinkedHashMap<>();
+      for (State state : positions.values()) {
+        if (state.isFinished()) {
+          continue;
+        }
+        if (ply % 2 == agentParity) {
+          add(next, state.getNextState(getAction(state)));
+        } else {
+          for (long a = state.getValidActions(); a != 0; a &= a - 1) {
+            add(next, state.getNextState(Long.numberOfTrailingZeros(a)));
+          }
+        }
+      }
+      positions = next;
+    }
+  }
+
+  private static void add(Map<Long, State> positions, State state) {
+    positions.put(state.getSymmetricCanonicalKey(), state);
+  }
+
+  /**
+   * Return book move in the state, searching the position if it has none yet
+   */
+  private int getAction(State state) {
+    long key = state.getSymmetricCanonicalKey();
+    Integer canonicalAction = book.get(key);
+    if (canonicalAction != null) {
+      return state.fromCanonicalAction(canonicalAction);
+    }
+    int action = agent.getAction(state);
+    book.put(key, state.toCanonicalAction(action));
+    System.out.printf("positions %d, move count %d, %.0f s%n", book.size(),
+        state.getMoveCount(), (System.currentTimeMillis() - start) / 1000.0);
+    return action;
+  }
+
+  private void write(File output) throws IOException {
+    long[] keys = new long[book.size()];
+    int[] actions = new int[book.size()];
+    int i = 0;
+    for (Map.Entry<Long, Integer> entry : book.entrySet()) {
+      keys[i] = entry.getKey();
+      actions[i] = entry.getValue();
+      i++;
+    }
+    OpeningBook.write(output, keys, actions);
+  }
+}
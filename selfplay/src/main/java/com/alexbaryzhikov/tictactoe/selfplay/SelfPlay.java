@@ -0,0 +1,180 @@
+package com.alexbaryzhikov.tictactoe.selfplay;
+
+import com.alexbaryzhikov.tictactoe.data.RecordWriter;
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.JavaEvaluator;
+import com.alexbaryzhikov.tictactoe.mcts.Mcts;
+import com.alexbaryzhikov.tictactoe.mcts.MctsP;
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
+import com.alexbaryzhikov.tictactoe.mcts.SearchLimits;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Self-play generator of training data. Parallel workers play games of the agent against itself,
+ * each with its own engine, and append every position with the visit counts of its search and
+ * the final game result to one record file.
+ * <p>
+ * A worker keeps only the positions of its current game, and the writer flushes a fixed size
+ * buffer, so memory use doesn't grow with the number of games.
+ * <p>
+ * Arguments: output file, games, workers, simulations per move, and optionally a network file of
+ * {@link JavaEvaluator}. With a network the games are played by {@link MctsP}, else by
+ * {@link Mcts}.
+ */
+public final class SelfPlay {
+
+  private static final int SAMPLED_MOVES = 8;  // opening moves sampled by visit counts
+  private static final float ROOT_NOISE = 0.25f;
+  private static final long REPORT_INTERVAL = 10000;
+
+  private final int games;
+  private final int simulations;
+  private final JavaEvaluator evaluator;  // loaded once, workers run copies of it
+  private final RecordWriter writer;
+  private final AtomicInteger started = new AtomicInteger();
+  private final AtomicInteger finished = new AtomicInteger();
+  private final AtomicLong positions = new AtomicLong();
+  private volatile Throwable failure;
+
+  private SelfPlay(int games, int simulations, File network, RecordWriter writer)
+      throws IOException {
+    this.games = games;
+    this.simulations = simulations;
+    this.evaluator = network != null ? JavaEvaluator.load(network) : null;
+    this.writer = writer;
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 4) {
+      System.err.println("Usage: SelfPlay output games workers simulations [network]");
+      System.exit(1);
+    }
+    File output = new File(args[0]);
+    int games = Integer.parseInt(args[1]);
+    int workers = Integer.parseInt(args[2]);
+    int simulations = Integer.parseInt(args[3]);
+    File network = args.length > 4 ? new File(args[4]) : null;
+
+    long start = System.currentTimeMillis();
+    try (RecordWriter writer = new RecordWriter(output)) {
+      final SelfPlay selfPlay = new SelfPlay(games, simulations, network, writer);
+      Thread[] threads = new Thread[workers];
+      for (int i = 0; i < workers; i++) {
+        final long seed = start + i;
+        threads[i] = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            selfPlay.runWorker(seed);
+          }
+        }, "Self-play worker " + i);
+        threads[i].start();
+      }
+      for (Thread thread : threads) {
+        while (thread.isAlive()) {
+          thread.join(REPORT_INTERVAL);
+          selfPlay.report(start);
+        }
+      }
+      if (selfPlay.failure != null) {
+        throw new IOException("Self-play failed", selfPlay.failure);
+      }
+    }
+  }
+
+  /**
+   * Play games until the requested number is started
+   */
+  private void runWorker(long seed) {
+    Random random = new Random(seed);
+    SearchEngine engine = null;
+    List<State> states = new ArrayList<>(Game.board_size);
+    List<int[]> distributions = new ArrayList<>(Game.board_size);
+    try {
+      engine = createEngine(seed);
+      while (failure == null && started.getAndIncrement() < games) {
+        states.clear();
+        distributions.clear();
+        State state = Game.getInitialState(random.nextInt(2) * 2 - 1);
+        while (!state.isFinished()) {
+          int[] visits = engine.getDistribution(state);
+          states.add(state);
+          distributions.add(visits);
+          state = state.getNextState(chooseAction(state, visits, random));
+        }
+        int winner = state.getValue() == 0 ? 0 : -state.getPlayer();  // player who moved last
+        synchronized (writer) {
+          for (int i = 0; i < states.size(); i++) {
+            int player = states.get(i).getPlayer();
+            int outcome = winner == 0 ? 0 : winner == player ? 1 : -1;
+            writer.write(states.get(i), distributions.get(i), outcome);
+          }
+        }
+        positions.addAndGet(states.size());
+        finished.incrementAndGet();
+      }
+    } catch (IOException | RuntimeException e) {
+      failure = e;
+    } finally {
+      if (engine != null) {
+        engine.shutdown();
+      }
+    }
+  }
+
+  private SearchEngine createEngine(long seed) {
+    SearchEngine engine;
+    if (evaluator != null) {
+      MctsP mctsP = new MctsP(evaluator.copy());  // evaluator is not thread-safe
+      mctsP.setRootNoise(ROOT_NOISE, seed);
+      engine = mctsP;
+    } else {
+      engine = new Mcts(1, seed);
+    }
+    engine.setLimits(SearchLimits.ofSimulations(simulations));
+    return engine;
+  }
+
+  /**
+   * Sample opening moves by visit counts, so that games diverge, and play the most visited action
+   * afterwards
+   */
+  private static int chooseAction(State state, int[] visits, Random random) {
+    long total = 0;
+    int best = -1;
+    for (int i = 0; i < visits.length; i++) {
+      total += visits[i];
+      if (visits[i] > 0 && (best < 0 || visits[i] > visits[best])) {
+        best = i;
+      }
+    }
+    if (total == 0) {  // no visits, e.g. the root was solved by an earlier search
+      long validActions = state.getValidActions();
+      return Game.nthAction(validActions, random.nextInt(Long.bitCount(validActions)));
+    }
+    if (state.getMoveCount() >= SAMPLED_MOVES) {
+      return best;
+    }
+    long r = (long) (random.nextDouble() * total);
+    for (int i = 0; i < visits.length; i++) {
+      r -= visits[i];
+      if (r < 0) {
+        return i;
+      }
+    }
+    return best;
+  }
+
+  private void report(long start) {
+    double seconds = (System.currentTimeMillis() - start) / 1000.0;
+    System.out.printf("games %d/%d, positions %d, %.1f positions/s%n",
+        finished.get(), games, positions.get(), positions.get() / seconds);
+  }
+}
@@ -0,0 +1,75 @@
+package com.alexbaryzhikov.tictactoe.server;
+
+import com.alexbaryzhikov.tictactoe.agents.Agent;
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
+import com.alexbaryzhikov.tictactoe.mcts.SearchMonitor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Agent search of a session, queued for a server worker. The future completes with the action
+ * played by the agent, or -1 if the search was cancelled while running.
+ * <p>
+ * The task is also the monitor of the search: cancelling the future aborts the engine.
+ */
+final class AgentTask extends FutureTask<Integer> implements SearchMonitor {
+
+  final ServerSession session;
+  private final Search search;
+  private volatile int progress;
+  boolean played;  // the agent move is on the board, guarded by the session
+
+  AgentTask(ServerSession session) {
+    this(session, new Search(session));
+  }
+
+  private AgentTask(ServerSession session, Search search) {
+    super(search);
+    this.session = session;
+    this.search = search;
+    search.task = this;
+  }
+
+  /**
+   * Run the search on the calling worker with its engine
+   */
+  void run(SearchEngine engine, Agent agent) {
+    engine.setMonitor(this);
+    search.agent = agent;
+    try {
+      run();
+    } finally {
+      search.agent = null;
+      engine.setMonitor(SearchMonitor.NONE);
+    }
+  }
+
+  @Override
+  public void onProgressUpdate(int progress) {
+    this.progress = progress;
+  }
+
+  /**
+   * Return percent of the search budget used
+   */
+  int getProgress() {
+    return isDone() ? 100 : progress;
+  }
+
+  private static final class Search implements Callable<Integer> {
+
+    final ServerSession session;
+    AgentTask task;
+    Agent agent;  // set by the running worker
+
+    Search(ServerSession session) {
+      this.session = session;
+    }
+
+    @Override
+    public Integer call() {
+      return session.playAgentMove(agent, task);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.alexbaryzhikov.tictactoe.server;
+
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
+
+/**
+ * Source of search engines, one per server worker
+ */
+public interface EngineFactory {
+
+  /**
+   * Create engine with its limits set. Called once by each worker.
+   */
+  SearchEngine create();
+}
@@ -0,0 +1,288 @@
+package com.alexbaryzhikov.tictactoe.server;
+
+import com.alexbaryzhikov.tictactoe.agents.Agent;
+import com.alexbaryzhikov.tictactoe.agents.BookAgent;
+import com.alexbaryzhikov.tictactoe.agents.MctsAgent;
+import com.alexbaryzhikov.tictactoe.data.OpeningBook;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless host of many concurrent games against the agent.
+ * <p>
+ * Clients create sessions and send their moves, and the server answers each with an agent move,
+ * searched on one of a fixed number of workers. Each worker owns one search engine, so the number
+ * of engines and search threads doesn't grow with the number of sessions. Workers run on daemon
+ * threads.
+ * <p>
+ * Fairness: searches are served in arrival order, and a session has at most one search
+ * outstanding, so a busy session can't crowd out the others.
+ * <p>
+ * Backpressure: at most {@code maxPending} searches wait for a worker. Beyond that a client move
+ * is rejected with {@link RejectedExecutionException} before it is played, and the client may
+ * retry it later.
+ * <p>
+ * Agent moves in the opening come from the {@link OpeningBook}, if one is given, without a search.
+ * <p>
+ * The server is thread-safe.
+ */
+public final class GameServer {
+
+  private final ConcurrentMap<Long, ServerSession> sessions = new ConcurrentHashMap<>();
+  private final AtomicLong nextId = new AtomicLong();
+  private final Random random = new Random();
+  private final BlockingQueue<AgentTask> queue = new LinkedBlockingQueue<>();
+  private final Semaphore slots;  // free places in the queue
+  private final List<Thread> threads = new ArrayList<>();
+  private volatile boolean shutdown;
+
+  /**
+   * @param factory    Source of the search engines of the workers
+   * @param workers    Number of searches running at once
+   * @param maxPending Number of searches that may wait for a worker
+   */
+  public GameServer(EngineFactory factory, int workers, int maxPending) {
+    this(factory, workers, maxPending, null);
+  }
+
+  /**
+   * @param factory    Source of the search engines of the workers
+   * @param workers    Number of searches running at once
+   * @param maxPending Number of searches that may wait for a worker
+   * @param book       Opening book played before searching, may be null
+   */
+  public GameServer(EngineFactory factory, int workers, int maxPending, OpeningBook book) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Invalid number of workers: " + workers);
+    }
+    if (maxPending < 1) {
+      throw new IllegalArgumentException("Invalid queue capacity: " + maxPending);
+    }
+    slots = new Semaphore(maxPending);
+    for (int i = 0; i < workers; i++) {
+      threads.add(startThread(new Worker(factory, book), "Game server worker " + i));
+    }
+  }
+
+  /**
+   * Create session with a random first player and return its id
+   */
+  public long createSession() {
+    return createSession(random.nextInt(2) * 2 - 1);
+  }
+
+  /**
+   * Create session and return its id. If the agent moves first, its search is queued at once.
+   *
+   * @param firstPlayer 1 for the client, -1 for the agent
+   * @throws RejectedExecutionException if the agent moves first and the queue is full
+   */
+  public long createSession(int firstPlayer) {
+    checkRunning();
+    ServerSession session = new ServerSession(nextId.incrementAndGet(), firstPlayer);
+    if (session.needsAgentMove()) {
+      submit(session);
+    }
+    sessions.put(session.id, session);
+    return session.id;
+  }
+
+  /**
+   * Return current state of the session
+   */
+  public State getState(long id) {
+    return getSession(id).getState();
+  }
+
+  /**
+   * Play the client action and queue the agent answer. Return future of the agent action, null if
+   * the client move has finished the game.
+   *
+   * @throws RejectedExecutionException if the queue is full, the move is not played then
+   * @throws IllegalStateException      if it's not the client's turn
+   * @throws IllegalArgumentException   if the action is not valid
+   */
+  public Future<Integer> makeMove(long id, int action) {
+    checkRunning();
+    ServerSession session = getSession(id);
+    synchronized (session) {
+      session.checkClientMove(action);
+      if (!slots.tryAcquire()) {
+        throw new RejectedExecutionException("Server is busy");
+      }
+      session.makeClientMove(action);
+      if (!session.needsAgentMove()) {  // game is over
+        slots.release();
+        return null;
+      }
+      return enqueue(session);
+    }
+  }
+
+  /**
+   * Queue the agent move again, after its search was cancelled
+   *
+   * @throws RejectedExecutionException if the queue is full
+   * @throws IllegalStateException      if the agent is not to move or its search is outstanding
+   */
+  public Future<Integer> requestAgentMove(long id) {
+    checkRunning();
+    ServerSession session = getSession(id);
+    synchronized (session) {
+      if (!session.needsAgentMove()) {
+        throw new IllegalStateException("No agent move to search in session " + id);
+      }
+      return submit(session);
+    }
+  }
+
+  /**
+   * Return future of the last agent move of the session, null if there was none
+   */
+  public Future<Integer> getAgentMove(long id) {
+    return getSession(id).getTask();
+  }
+
+  /**
+   * Return percent of the search budget used by the last agent search of the session
+   */
+  public int getProgress(long id) {
+    AgentTask task = getSession(id).getTask();
+    return task == null ? 0 : task.getProgress();
+  }
+
+  /**
+   * Cancel outstanding agent search of the session. A waiting search is skipped, a running one is
+   * aborted by the engine. Return true if there was a search to cancel.
+   */
+  public boolean cancel(long id) {
+    return getSession(id).cancel();
+  }
+
+  /**
+   * Cancel outstanding search and forget the session
+   */
+  public void closeSession(long id) {
+    ServerSession session = sessions.remove(id);
+    if (session != null) {
+      session.close();
+    }
+  }
+
+  public int getSessionCount() {
+    return sessions.size();
+  }
+
+  /**
+   * Return number of searches waiting for a worker
+   */
+  public int getPendingCount() {
+    return queue.size();
+  }
+
+  /**
+   * Cancel all searches and stop the workers
+   */
+  public void shutdown() {
+    shutdown = true;
+    for (ServerSession session : sessions.values()) {
+      session.cancel();
+    }
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+  }
+
+  private ServerSession getSession(long id) {
+    ServerSession session = sessions.get(id);
+    if (session == null) {
+      throw new IllegalArgumentException("Unknown session: " + id);
+    }
+    return session;
+  }
+
+  private void checkRunning() {
+    if (shutdown) {
+      throw new RejectedExecutionException("Server is shut down");
+    }
+  }
+
+  /**
+   * Take a queue slot and queue the agent search of the session
+   */
+  private Future<Integer> submit(ServerSession session) {
+    if (!slots.tryAcquire()) {
+      throw new RejectedExecutionException("Server is busy");
+    }
+    return enqueue(session);
+  }
+
+  /**
+   * Queue the agent search of the session, holding a queue slot
+   */
+  private Future<Integer> enqueue(ServerSession session) {
+    AgentTask task = new AgentTask(session);
+    session.setTask(task);
+    queue.add(task);
+    return task;
+  }
+
+  /**
+   * Start the task on a daemon thread
+   */
+  private static Thread startThread(Runnable task, String name) {
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Search loop of a worker thread
+   */
+  private final class Worker implements Runnable {
+
+    private final EngineFactory factory;
+    private final OpeningBook book;
+
+    Worker(EngineFactory factory, OpeningBook book) {
+      this.factory = factory;
+      this.book = book;
+    }
+
+    @Override
+    public void run() {
+      SearchEngine engine = factory.create();
+      Agent agent = new MctsAgent(engine);
+      if (book != null) {
+        agent = new BookAgent(book, agent);
+      }
+      try {
+        while (!shutdown) {
+          AgentTask task;
+          try {
+            task = queue.take();
+          } catch (InterruptedException e) {
+            continue;  // shutdown is checked by the loop
+          }
+          slots.release();
+          task.run(engine, agent);
+        }
+      } finally {
+        engine.shutdown();
+      }
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.alexbaryzhikov.tictactoe.server;
+
+import com.alexbaryzhikov.tictactoe.data.OpeningBook;
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.Mcts;
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
+import com.alexbaryzhikov.tictactoe.mcts.SearchLimits;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the game server: client threads keep many sessions busy with random moves and
+ * measure the latency of the agent answers.
+ * <p>
+ * Arguments: sessions, workers, queue capacity, simulations per search, client threads, seconds,
+ * and optionally an opening book file.
+ */
+public final class LoadTest {
+
+  private static final int MAX_SAMPLES = 1 << 20;
+
+  private final GameServer server;
+  private final int sessions;
+  private final long deadline;
+  private final long[] latencies = new long[MAX_SAMPLES];
+  private final AtomicInteger samples = new AtomicInteger();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong games = new AtomicLong();
+
+  private LoadTest(GameServer server, int sessions, long deadline) {
+    this.server = server;
+    this.sessions = sessions;
+    this.deadline = deadline;
+  }
+
+  public static void main(String[] args) throws InterruptedException, IOException {
+    int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int workers = args.length > 1 ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+    int maxPending = args.length > 2 ? Integer.parseInt(args[2]) : sessions / 2;
+    final int simulations = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+    int clients = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+    int seconds = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+    OpeningBook book = args.length > 6 ? new OpeningBook(new File(args[6])) : null;
+
+    final AtomicInteger seeds = new AtomicInteger();
+    GameServer server = new GameServer(new EngineFactory() {
+      @Override
+      public SearchEngine create() {
+        Mcts engine = new Mcts(1, seeds.incrementAndGet());
+        engine.setLimits(SearchLimits.ofSimulations(simulations));
+        return engine;
+      }
+    }, workers, maxPending, book);
+    final LoadTest test = new LoadTest(server, sessions,
+        System.currentTimeMillis() + seconds * 1000L);
+
+    Thread[] threads = new Thread[clients];
+    for (int i = 0; i < clients; i++) {
+      final int client = i;
+      final int count = sessions / clients + (i < sessions % clients ? 1 : 0);
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          test.runClient(client, count);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    server.shutdown();
+    test.report(sessions, workers, maxPending, simulations, seconds);
+  }
+
+  /**
+   * Play random moves in the sessions until the deadline
+   */
+  private void runClient(int client, int count) {
+    Random random = new Random(client);
+    long[] ids = new long[count];
+    long[] sent = new long[count];
+    Future<?>[] answers = new Future<?>[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = createSession();
+    }
+    while (System.currentTimeMillis() < deadline) {
+      boolean idle = true;
+      for (int i = 0; i < count; i++) {
+        if (answers[i] != null) {
+          if (!answers[i].isDone()) {
+            continue;
+          }
+          addSample(System.nanoTime() - sent[i]);
+          answers[i] = null;
+        }
+        State state = server.getState(ids[i]);
+        if (state.isFinished()) {
+          server.closeSession(ids[i]);
+          games.incrementAndGet();
+          ids[i] = createSession();
+          continue;
+        }
+        if (state.getPlayer() != ServerSession.CLIENT) {  // agent first, answer is pending
+          answers[i] = server.getAgentMove(ids[i]);
+          sent[i] = System.nanoTime();
+          continue;
+        }
+        long validActions = state.getValidActions();
+        int action = Game.nthAction(validActions, random.nextInt(Long.bitCount(validActions)));
+        try {
+          sent[i] = System.nanoTime();
+          answers[i] = server.makeMove(ids[i], action);
+          idle = false;
+        } catch (RejectedExecutionException e) {
+          rejected.incrementAndGet();
+        }
+      }
+      if (idle) {
+        sleep();
+      }
+    }
+  }
+
+  private long createSession() {
+    while (true) {
+      try {
+        return server.createSession(ServerSession.CLIENT);
+      } catch (RejectedExecutionException e) {
+        rejected.incrementAndGet();
+        sleep();
+      }
+    }
+  }
+
+  private void addSample(long latency) {
+    int i = samples.getAndIncrement();
+    if (i < MAX_SAMPLES) {
+      latencies[i] = latency;
+    }
+  }
+
+  private void report(int sessions, int workers, int maxPending, int simulations, int seconds) {
+    int count = Math.min(samples.get(), MAX_SAMPLES);
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    long sum = 0;
+    for (long latency : sorted) {
+      sum += latency;
+    }
+    System.out.printf("sessions %d, workers %d, queue %d, simulations %d, %d s%n",
+        sessions, workers, maxPending, simulations, seconds);
+    System.out.printf("agent moves %d (%.1f/s), games %d, rejected requests %d%n",
+        samples.get(), samples.get() / (double) seconds, games.get(), rejected.get());
+    if (count > 0) {
+      System.out.printf("latency ms: mean %.1f, p50 %.1f, p99 %.1f, max %.1f%n",
+          sum / 1e6 / count, sorted[count / 2] / 1e6, sorted[(int) (count * 0.99)] / 1e6,
+          sorted[count - 1] / 1e6);
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
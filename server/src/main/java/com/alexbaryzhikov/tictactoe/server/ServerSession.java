@@ -0,0 +1,105 @@
+package com.alexbaryzhikov.tictactoe.server;
+
+import com.alexbaryzhikov.tictactoe.agents.Agent;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.session.GameSession;
+
+import java.util.Random;
+
+/**
+ * Game hosted by the server. The client plays player 1, the agent plays player -1.
+ * <p>
+ * The session has at most one agent search outstanding. Moves and cancellation are synchronized
+ * on the session, the search itself runs outside the lock.
+ */
+final class ServerSession {
+
+  static final int CLIENT = 1;
+  static final int AGENT = -1;
+
+  final long id;
+  private final GameSession game;
+  private AgentTask task;  // last agent search
+  private boolean closed;
+
+  ServerSession(long id, int firstPlayer) {
+    this.id = id;
+    game = new GameSession(new Random());
+    game.restart(firstPlayer);
+  }
+
+  synchronized State getState() {
+    return game.getState();
+  }
+
+  synchronized AgentTask getTask() {
+    return task;
+  }
+
+  /**
+   * Return true if the agent is to move and no search is outstanding
+   */
+  synchronized boolean needsAgentMove() {
+    State state = game.getState();
+    return !closed && !state.isFinished() && state.getPlayer() == AGENT
+        && (task == null || task.isDone() || task.played);
+  }
+
+  /**
+   * Check that the client may play the action
+   */
+  synchronized void checkClientMove(int action) {
+    if (closed) {
+      throw new IllegalStateException("Session " + id + " is closed");
+    }
+    State state = game.getState();
+    if (state.isFinished() || state.getPlayer() != CLIENT) {
+      throw new IllegalStateException("Not the client's turn in session " + id);
+    }
+    if (!game.isValidAction(action)) {
+      throw new IllegalArgumentException("Invalid action: " + action);
+    }
+  }
+
+  /**
+   * Play the client action, checked beforehand
+   */
+  synchronized void makeClientMove(int action) {
+    checkClientMove(action);
+    game.makeMove(action);
+  }
+
+  synchronized void setTask(AgentTask task) {
+    this.task = task;
+  }
+
+  /**
+   * Search with the agent and play its action, unless the search was cancelled meanwhile.
+   * Return the action, -1 if cancelled.
+   */
+  int playAgentMove(Agent agent, AgentTask task) {
+    State state = getState();
+    int action = agent.getAction(state);  // long search, outside the lock
+    synchronized (this) {
+      if (action < 0 || task.isCancelled() || closed || game.getState() != state) {
+        return -1;
+      }
+      game.makeMove(action);
+      task.played = true;  // the task completes after the lock is released
+      return action;
+    }
+  }
+
+  /**
+   * Cancel outstanding agent search. Return true if there was one. A search whose move is
+   * already played is not outstanding.
+   */
+  synchronized boolean cancel() {
+    return task != null && !task.played && task.cancel(false);
+  }
+
+  synchronized void close() {
+    closed = true;
+    cancel();
+  }
+}
@@ -0,0 +1,200 @@
+package com.alexbaryzhikov.tictactoe.server;
+
+import com.alexbaryzhikov.tictactoe.game.Game;
+import com.alexbaryzhikov.tictactoe.game.State;
+import com.alexbaryzhikov.tictactoe.mcts.SearchEngine;
+import com.alexbaryzhikov.tictactoe.mcts.SearchLimits;
+import com.alexbaryzhikov.tictactoe.mcts.SearchMonitor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GameServerTest {
+
+  private static final int ACTION = 0;
+
+  private final GatedEngine engine = new GatedEngine();
+  private GameServer server;
+
+  @After
+  public void tearDown() {
+    if (server != null) {
+      server.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void makeMove_queueFull_rejectsWithoutPlaying() throws Exception {
+    server = newServer(1);
+    Future<Integer> running = startSearch();
+    long waiting = server.createSession(ServerSession.CLIENT);
+    Future<Integer> queued = server.makeMove(waiting, ACTION);
+    assertEquals(1, server.getPendingCount());
+
+    long rejected = server.createSession(ServerSession.CLIENT);
+    try {
+      server.makeMove(rejected, ACTION);
+      fail("Move accepted with the queue full");
+    } catch (RejectedExecutionException expected) {
+    }
+    assertEquals(0, server.getState(rejected).getMoveCount());
+    try {
+      server.createSession(ServerSession.AGENT);
+      fail("Agent search queued with the queue full");
+    } catch (RejectedExecutionException expected) {
+    }
+    assertEquals(3, server.getSessionCount());
+
+    engine.gate.release(2);
+    assertAgentMoved(running);
+    assertAgentMoved(queued);
+    // The slot taken by the queued search is free again
+    engine.gate.release();
+    assertAgentMoved(server.makeMove(rejected, ACTION));
+    assertEquals(3, engine.searches.get());
+  }
+
+  @Test(timeout = 10000)
+  public void cancel_waitingSearch_isSkipped() throws Exception {
+    server = newServer(2);
+    Future<Integer> running = startSearch();
+    long id = server.createSession(ServerSession.CLIENT);
+    Future<Integer> skipped = server.makeMove(id, ACTION);
+    assertTrue(server.cancel(id));
+    assertTrue(skipped.isCancelled());
+    assertFalse(server.cancel(id));
+
+    engine.gate.release();
+    assertAgentMoved(running);
+    // The worker takes the cancelled search and drops it, then serves the next one
+    Future<Integer> next = startSearch();
+    assertEquals(0, server.getPendingCount());
+    assertEquals(2, engine.searches.get());
+    assertEquals(1, server.getState(id).getMoveCount());
+
+    engine.gate.release(2);
+    assertAgentMoved(next);
+    assertAgentMoved(server.requestAgentMove(id));
+    assertEquals(2, server.getState(id).getMoveCount());
+  }
+
+  @Test(timeout = 10000)
+  public void cancel_runningSearch_abortsEngine() throws Exception {
+    server = newServer(1);
+    long id = server.createSession(ServerSession.CLIENT);
+    Future<Integer> aborted = server.makeMove(id, ACTION);
+    engine.started.acquire();
+    assertTrue(server.cancel(id));
+    engine.aborted.acquire();
+    assertTrue(aborted.isCancelled());
+    try {
+      server.getAgentMove(id).get();
+      fail("Cancelled search completed");
+    } catch (CancellationException expected) {
+    }
+    assertEquals(1, server.getState(id).getMoveCount());
+
+    Future<Integer> retried = server.requestAgentMove(id);
+    engine.gate.release();
+    assertAgentMoved(retried);
+    assertEquals(2, server.getState(id).getMoveCount());
+    assertFalse(server.cancel(id));  // the move is played
+  }
+
+  private GameServer newServer(int maxPending) {
+    return new GameServer(new EngineFactory() {
+      @Override
+      public SearchEngine create() {
+        return engine;
+      }
+    }, 1, maxPending);
+  }
+
+  /**
+   * Play a client move in a new session and wait for the worker to start the agent search
+   */
+  private Future<Integer> startSearch() throws InterruptedException {
+    long id = server.createSession(ServerSession.CLIENT);
+    Future<Integer> future = server.makeMove(id, ACTION);
+    engine.started.acquire();
+    return future;
+  }
+
+  private static void assertAgentMoved(Future<Integer> future)
+      throws InterruptedException, ExecutionException {
+    assertNotNull(future);
+    assertTrue(future.get() >= 0);
+  }
+
+  /**
+   * Engine whose searches wait for a permit of the gate, or for the monitor to cancel them
+   */
+  private static final class GatedEngine implements SearchEngine {
+
+    final Semaphore gate = new Semaphore(0);
+    final Semaphore started = new Semaphore(0);
+    final Semaphore aborted = new Semaphore(0);
+    final AtomicInteger searches = new AtomicInteger();
+    private volatile SearchMonitor monitor = SearchMonitor.NONE;
+
+    @Override
+    public int[] getDistribution(State state) {
+      SearchMonitor monitor = this.monitor;
+      searches.incrementAndGet();
+      started.release();
+      try {
+        while (!gate.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+          if (monitor.isCancelled()) {
+            aborted.release();
+            return new int[0];
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new int[0];
+      }
+      int[] distribution = new int[Game.board_size];
+      distribution[Long.numberOfTrailingZeros(state.getValidActions())] = 1;
+      return distribution;
+    }
+
+    @Override
+    public void ponder(State state) {
+    }
+
+    @Override
+    public void stopPondering() {
+    }
+
+    @Override
+    public void cancelPondering() {
+    }
+
+    @Override
+    public void setLimits(SearchLimits limits) {
+    }
+
+    @Override
+    public void setMonitor(SearchMonitor monitor) {
+      this.monitor = monitor;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+}